@@ -0,0 +1,66 @@
+package com.ecommerce.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+    public static final String FRAGMENTS = "fragments";
+    public static final String CART_SUMMARIES = "cartSummaries";
+
+    @Value("${app.cache.products.max-size:10000}")
+    private long productsMaxSize;
+
+    // Upper bound on how stale a cached product (and its stock) can be if an eviction races a reload
+    @Value("${app.cache.products.ttl:30s}")
+    private Duration productsTtl;
+
+    // Fragment keys carry the product version, so stale entries are never read; they only need to age out
+    @Value("${app.cache.fragments.max-size:5000}")
+    private long fragmentsMaxSize;
+
+    @Value("${app.cache.fragments.ttl:1h}")
+    private Duration fragmentsTtl;
+
+    @Value("${app.cache.cart-summaries.max-size:50000}")
+    private long cartSummariesMaxSize;
+
+    // Cart mutations evict the owner's summary; this bounds staleness if an eviction races a concurrent reload
+    @Value("${app.cache.cart-summaries.ttl:10m}")
+    private Duration cartSummariesTtl;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        caffeineCacheManager.setAllowNullValues(false);
+        caffeineCacheManager.registerCustomCache(PRODUCTS, Caffeine.newBuilder()
+                .maximumSize(productsMaxSize)
+                .expireAfterWrite(productsTtl)
+                .recordStats()
+                .build());
+        caffeineCacheManager.registerCustomCache(FRAGMENTS, Caffeine.newBuilder()
+                .maximumSize(fragmentsMaxSize)
+                .expireAfterAccess(fragmentsTtl)
+                .recordStats()
+                .build());
+        caffeineCacheManager.registerCustomCache(CART_SUMMARIES, Caffeine.newBuilder()
+                .maximumSize(cartSummariesMaxSize)
+                .expireAfterWrite(cartSummariesTtl)
+                .recordStats()
+                .build());
+
+        // Evictions issued inside a transaction are applied only once it commits
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
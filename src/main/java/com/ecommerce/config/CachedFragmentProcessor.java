@@ -0,0 +1,80 @@
+package com.ecommerce.config;
+
+import org.springframework.cache.Cache;
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.engine.AttributeName;
+import org.thymeleaf.engine.TemplateManager;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.model.IModel;
+import org.thymeleaf.model.IModelFactory;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.processor.element.AbstractAttributeModelProcessor;
+import org.thymeleaf.processor.element.IElementModelStructureHandler;
+import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.templatemode.TemplateMode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+public class CachedFragmentProcessor extends AbstractAttributeModelProcessor {
+
+    private static final String ATTRIBUTE_NAME = "key";
+
+    // After th:each (200), th:if (300) and th:with (600), so the key can use iteration and local
+    // variables, but before any attribute or text processor touches the element
+    private static final int PRECEDENCE = 650;
+
+    private final Cache fragments;
+
+    public CachedFragmentProcessor(String dialectPrefix, Cache fragments) {
+        super(TemplateMode.HTML, dialectPrefix, null, false, ATTRIBUTE_NAME, true, PRECEDENCE, true);
+        this.fragments = fragments;
+    }
+
+    @Override
+    protected void doProcess(ITemplateContext context, IModel model, AttributeName attributeName,
+                             String attributeValue, IElementModelStructureHandler structureHandler) {
+        Object key = StandardExpressions.getExpressionParser(context.getConfiguration())
+                .parseExpression(context, attributeValue)
+                .execute(context);
+        if (key == null) {
+            // No key means no caching; the element is processed as if the attribute was not there
+            return;
+        }
+
+        String cacheKey = key + "|" + context.getLocale();
+        String html = fragments.get(cacheKey, String.class);
+        if (html == null) {
+            html = render(context, model, attributeName);
+            fragments.put(cacheKey, html);
+        }
+
+        IModelFactory modelFactory = context.getModelFactory();
+        model.reset();
+        model.add(modelFactory.createText(html));
+    }
+
+    // Writes the element back out as template markup and runs it through the engine in the current
+    // context, capturing the output instead of letting it flow into the page
+    private String render(ITemplateContext context, IModel model, AttributeName attributeName) {
+        IModelFactory modelFactory = context.getModelFactory();
+        IProcessableElementTag tag = (IProcessableElementTag) model.get(0);
+        IModel fragment = model.cloneModel();
+        fragment.replace(0, modelFactory.removeAttribute(tag, attributeName));
+
+        StringWriter markup = new StringWriter();
+        StringWriter output = new StringWriter();
+        try {
+            fragment.write(markup);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        TemplateManager templateManager = context.getConfiguration().getTemplateManager();
+        TemplateModel parsed = templateManager.parseString(context.getTemplateData(), markup.toString(),
+                tag.getLine(), tag.getCol(), getTemplateMode(), false);
+        templateManager.process(parsed, context, output);
+        return output.toString();
+    }
+}
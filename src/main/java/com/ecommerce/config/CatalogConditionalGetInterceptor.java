@@ -0,0 +1,86 @@
+package com.ecommerce.config;
+
+import com.ecommerce.service.BestSellerLeaderboard;
+import com.ecommerce.service.CatalogVersion;
+import com.ecommerce.service.CategoryCatalog;
+import com.ecommerce.service.HomePageModel;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Answers repeat anonymous catalog requests with 304 Not Modified before the controller runs.
+// Signed-in users see per-user markup (cart link, logout form) and keep the default no-store headers.
+@Component
+public class CatalogConditionalGetInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CategoryCatalog categoryCatalog;
+
+    @Autowired
+    private HomePageModel homePageModel;
+
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+
+    // How long a shared cache (reverse proxy or CDN) may serve a page without revalidating
+    @Value("${app.http.catalog.shared-max-age:60s}")
+    private Duration sharedMaxAge;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String method = request.getMethod();
+        if (!("GET".equals(method) || "HEAD".equals(method)) || !isAnonymous()
+                || RequestContextUtils.getInputFlashMap(request) != null) {
+            return true;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache()
+                .cachePublic()
+                .sMaxAge(sharedMaxAge)
+                .getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        return !webRequest.checkNotModified(etag(request), catalogVersion.getLastModified());
+    }
+
+    // The snapshot versions are part of the tag because the snapshots are rebuilt after the catalog
+    // version moves (the home page on a debounce); a tag must never describe older content than it names.
+    // Best sellers can change with no catalog change at all, as sales age out of their window.
+    private String etag(HttpServletRequest request) {
+        Map<String, String> parameters = new TreeMap<>();
+        for (Map.Entry<String, String[]> parameter : request.getParameterMap().entrySet()) {
+            parameters.put(parameter.getKey(), Arrays.toString(parameter.getValue()));
+        }
+        String target = request.getRequestURI() + parameters;
+        return "\"" + Long.toHexString(catalogVersion.get())
+                + "." + Long.toHexString(categoryCatalog.getSnapshot().getVersion())
+                + "." + Long.toHexString(homePageModel.getSnapshot().getVersion())
+                + "." + Long.toHexString(bestSellerLeaderboard.getVersion())
+                + "-" + Integer.toHexString(target.hashCode()) + "\"";
+    }
+
+    private boolean isAnonymous() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated();
+    }
+}
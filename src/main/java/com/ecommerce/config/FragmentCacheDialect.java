@@ -0,0 +1,28 @@
+package com.ecommerce.config;
+
+import org.springframework.cache.Cache;
+import org.thymeleaf.dialect.AbstractProcessorDialect;
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.standard.StandardDialect;
+
+import java.util.Set;
+
+// Adds cache:key="..." to templates. The marked element is rendered once per key and locale,
+// and later requests copy the stored HTML instead of evaluating the element again.
+public class FragmentCacheDialect extends AbstractProcessorDialect {
+
+    public static final String PREFIX = "cache";
+
+    private final Cache fragments;
+
+    public FragmentCacheDialect(Cache fragments) {
+        // Same precedence as the standard dialect, so ordering falls to the processor precedences
+        super("Fragment Cache", PREFIX, StandardDialect.PROCESSOR_PRECEDENCE);
+        this.fragments = fragments;
+    }
+
+    @Override
+    public Set<IProcessor> getProcessors(String dialectPrefix) {
+        return Set.of(new CachedFragmentProcessor(dialectPrefix, fragments));
+    }
+}
@@ -1,6 +1,7 @@
 package com.ecommerce.config;
 
 import com.ecommerce.util.CurrencyUtil;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -13,6 +14,12 @@ public class ThymeleafConfig {
     public CurrencyFormatter currencyFormatter() {
         return new CurrencyFormatter();
     }
+
+    // Picked up by Spring Boot's template engine like any other dialect bean
+    @Bean
+    public FragmentCacheDialect fragmentCacheDialect(CacheManager cacheManager) {
+        return new FragmentCacheDialect(cacheManager.getCache(CacheConfig.FRAGMENTS));
+    }
     
     public static class CurrencyFormatter {
         public String formatINR(BigDecimal amount) {
@@ -1,9 +1,12 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.dto.CartItemUpdate;
+import com.ecommerce.dto.CartSummary;
+import com.ecommerce.dto.ProductDetail;
 import com.ecommerce.model.CartItem;
-import com.ecommerce.model.Product;
 import com.ecommerce.model.User;
 import com.ecommerce.service.CartService;
+import com.ecommerce.service.ProductRecommender;
 import com.ecommerce.service.ProductService;
 import com.ecommerce.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +17,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.HashMap;
@@ -33,6 +38,9 @@ public class CartController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ProductRecommender productRecommender;
+
     @GetMapping
     public String viewCart(Authentication authentication, Model model) {
         if (authentication == null) {
@@ -46,7 +54,9 @@ public class CartController {
 
         List<CartItem> cartItems = cartService.getCartItems(user);
         model.addAttribute("cartItems", cartItems);
-        model.addAttribute("cartTotal", cartService.getCartTotal(user));
+        model.addAttribute("cartTotal", cartService.getCartSummary(user.getId()).getTotal());
+        model.addAttribute("recommendations", productRecommender.forBasket(
+                cartItems.stream().map(item -> item.getProduct().getId()).toList(), 4));
         
         return "cart/view";
     }
@@ -57,45 +67,34 @@ public class CartController {
                            Authentication authentication,
                            RedirectAttributes redirectAttributes) {
         
-        if (authentication == null) {
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
             return "redirect:/login";
         }
 
-        User user = userService.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) {
-            return "redirect:/login";
-        }
-
-        Optional<Product> productOpt = productService.findById(productId);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            
-            if (!product.isActive()) {
-                redirectAttributes.addFlashAttribute("errorMessage", "Product is not available.");
-                return "redirect:/products/" + productId;
-            }
-            
-            if (!productService.isInStock(product, quantity)) {
-                redirectAttributes.addFlashAttribute("errorMessage", "Not enough stock available.");
-                return "redirect:/products/" + productId;
-            }
-
-            cartService.addToCart(user, product, quantity);
+        if (quantity >= 1 && cartService.addToCart(userId, productId, quantity)) {
             redirectAttributes.addFlashAttribute("successMessage", "Product added to cart!");
-        } else {
-            redirectAttributes.addFlashAttribute("errorMessage", "Product not found.");
+            return "redirect:/cart";
         }
 
-        return "redirect:/cart";
+        String error = addToCartError(productId, quantity);
+        redirectAttributes.addFlashAttribute("errorMessage", error + ".");
+        return "Product not found".equals(error) ? "redirect:/cart" : "redirect:/products/" + productId;
     }
 
     @PostMapping("/update")
     public String updateCart(@RequestParam Long cartItemId,
                             @RequestParam int quantity,
+                            Authentication authentication,
                             RedirectAttributes redirectAttributes) {
         
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
+            return "redirect:/login";
+        }
+
         try {
-            cartService.updateCartItem(cartItemId, quantity);
+            cartService.updateCartItem(userId, cartItemId, quantity);
             redirectAttributes.addFlashAttribute("successMessage", "Cart updated successfully!");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Error updating cart.");
@@ -104,12 +103,79 @@ public class CartController {
         return "redirect:/cart";
     }
 
+    @PostMapping("/updateBatch")
+    public String updateCartBatch(@RequestParam("cartItemId") List<Long> cartItemIds,
+                                 @RequestParam("quantity") List<Integer> quantities,
+                                 Authentication authentication,
+                                 RedirectAttributes redirectAttributes) {
+        
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
+            return "redirect:/login";
+        }
+        if (cartItemIds.size() != quantities.size()) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Error updating cart.");
+            return "redirect:/cart";
+        }
+
+        List<CartItemUpdate> updates = new ArrayList<>(cartItemIds.size());
+        for (int i = 0; i < cartItemIds.size(); i++) {
+            updates.add(new CartItemUpdate(cartItemIds.get(i), quantities.get(i)));
+        }
+        Map<Long, String> errors = cartService.updateCartItems(userId, updates);
+        if (errors.isEmpty()) {
+            redirectAttributes.addFlashAttribute("successMessage", "Cart updated successfully!");
+        } else {
+            redirectAttributes.addFlashAttribute("errorMessage", String.join(". ", errors.values()) + ".");
+        }
+
+        return "redirect:/cart";
+    }
+
+    @PostMapping(value = "/updateBatch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> updateCartBatchJson(@RequestBody List<CartItemUpdate> updates,
+                                                                  Authentication authentication) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
+            response.put("success", false);
+            response.put("message", "Please login to update your cart");
+            response.put("redirectUrl", "/login");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        Map<Long, String> errors = cartService.updateCartItems(userId, updates);
+        if (!errors.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "Cart was not updated");
+            response.put("errors", errors);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+
+        CartSummary summary = cartService.getCartSummary(userId);
+        response.put("success", true);
+        response.put("message", "Cart updated successfully!");
+        response.put("cartCount", summary.getLineCount());
+        response.put("cartQuantity", summary.getQuantity());
+        response.put("cartTotal", summary.getTotal());
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/remove")
     public String removeFromCart(@RequestParam Long cartItemId,
+                                Authentication authentication,
                                 RedirectAttributes redirectAttributes) {
         
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
+            return "redirect:/login";
+        }
+
         try {
-            cartService.removeFromCart(cartItemId);
+            cartService.removeFromCart(userId, cartItemId);
             redirectAttributes.addFlashAttribute("successMessage", "Item removed from cart!");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Error removing item from cart.");
@@ -150,43 +216,25 @@ public class CartController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        User user = userService.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) {
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
             response.put("success", false);
             response.put("message", "User not found. Please login again.");
             response.put("redirectUrl", "/login");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        Optional<Product> productOpt = productService.findById(productId);
-        if (!productOpt.isPresent()) {
-            response.put("success", false);
-            response.put("message", "Product not found");
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
-        }
-
-        Product product = productOpt.get();
-        
-        if (!product.isActive()) {
-            response.put("success", false);
-            response.put("message", "Product is not available");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
-        }
-        
-        if (!productService.isInStock(product, quantity)) {
-            response.put("success", false);
-            response.put("message", "Not enough stock available");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
-        }
-
         try {
-            cartService.addToCart(user, product, quantity);
+            if (quantity < 1 || !cartService.addToCart(userId, productId, quantity)) {
+                String error = addToCartError(productId, quantity);
+                response.put("success", false);
+                response.put("message", error);
+                HttpStatus status = "Product not found".equals(error) ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST;
+                return ResponseEntity.status(status).body(response);
+            }
             response.put("success", true);
             response.put("message", "Product added to cart successfully!");
-            
-            // Get updated cart count
-            int cartCount = cartService.getCartItems(user).size();
-            response.put("cartCount", cartCount);
+            response.put("cartCount", cartService.getCartSummary(userId).getLineCount());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -195,4 +243,23 @@ public class CartController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
-}
\ No newline at end of file
+
+    private Long currentUserId(Authentication authentication) {
+        return userService.currentUserId(authentication);
+    }
+
+    // Only reached when the upsert was rejected, to tell the user why; reads the cached product
+    private String addToCartError(Long productId, int quantity) {
+        if (quantity < 1) {
+            return "Quantity must be at least 1";
+        }
+        Optional<ProductDetail> productOpt = productService.findDetailById(productId);
+        if (productOpt.isEmpty()) {
+            return "Product not found";
+        }
+        if (!productOpt.get().isActive()) {
+            return "Product is not available";
+        }
+        return "Not enough stock available";
+    }
+}
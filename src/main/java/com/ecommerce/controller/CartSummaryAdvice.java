@@ -0,0 +1,31 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.CartSummary;
+import com.ecommerce.service.CartService;
+import com.ecommerce.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ModelAttribute;
+
+// Exposes the cached cart summary to the pages for the header badge; anonymous requests get nothing
+@ControllerAdvice(assignableTypes = {HomeController.class, CartController.class})
+public class CartSummaryAdvice {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private UserService userService;
+
+    @ModelAttribute("cartSummary")
+    public CartSummary cartSummary(Authentication authentication, HttpServletRequest request) {
+        // Only pages render the badge; posts and AJAX calls would just reload a summary they are about to evict
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        Long userId = userService.currentUserId(authentication);
+        return userId != null ? cartService.getCartSummary(userId) : null;
+    }
+}
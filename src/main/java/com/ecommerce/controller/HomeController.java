@@ -1,13 +1,23 @@
 package com.ecommerce.controller;
 
-import com.ecommerce.model.Product;
+import com.ecommerce.dto.CategorySummary;
+import com.ecommerce.dto.ProductDetail;
+import com.ecommerce.dto.ProductSummary;
 import com.ecommerce.model.Category;
+import com.ecommerce.service.BestSellerLeaderboard;
+import com.ecommerce.service.CategoryCatalog;
+import com.ecommerce.service.FacetedProductPage;
+import com.ecommerce.service.HomePageModel;
+import com.ecommerce.service.HomePageSnapshot;
+import com.ecommerce.service.ProductCursorPage;
+import com.ecommerce.service.ProductRecommender;
 import com.ecommerce.service.ProductService;
 import com.ecommerce.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -28,20 +38,32 @@ public class HomeController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private CategoryCatalog categoryCatalog;
+
+    @Autowired
+    private HomePageModel homePageModel;
+
+    @Autowired
+    private ProductRecommender productRecommender;
+
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+
     @GetMapping("/")
     public String home(Model model) {
-        List<Product> featuredProducts = productService.findLatestProducts();
-        List<Category> categories = categoryService.findAllActive();
-        
-        model.addAttribute("featuredProducts", featuredProducts);
-        model.addAttribute("categories", categories);
+        HomePageSnapshot homePage = homePageModel.getSnapshot();
+
+        model.addAttribute("featuredProducts", homePage.getFeaturedProducts());
+        model.addAttribute("categories", homePage.getCategories());
+        model.addAttribute("bestSellers", homePage.getBestSellers());
         return "index";
     }
 
     @GetMapping("/products")
     public String products(@RequestParam(defaultValue = "0") int page,
                           @RequestParam(defaultValue = "12") int size,
-                          @RequestParam(defaultValue = "name") String sortBy,
+                          @RequestParam(required = false) String sortBy,
                           @RequestParam(defaultValue = "asc") String sortDir,
                           @RequestParam(required = false) Long categoryId,
                           @RequestParam(required = false) String search,
@@ -49,33 +71,45 @@ public class HomeController {
                           @RequestParam(required = false) BigDecimal maxPrice,
                           Model model) {
         
-        Sort sort = sortDir.equalsIgnoreCase("desc") ? 
-                   Sort.by(sortBy).descending() : 
-                   Sort.by(sortBy).ascending();
-        
-        Pageable pageable = PageRequest.of(page, size, sort);
+        boolean hasSearch = search != null && !search.trim().isEmpty();
         
-        Category category = null;
-        if (categoryId != null) {
-            category = categoryService.findById(categoryId).orElse(null);
+        // Text searches without an explicit sort are shown by relevance
+        String sortProperty = sortBy != null && !sortBy.isBlank() ? sortBy : (hasSearch ? null : "name");
+        Sort sort = Sort.unsorted();
+        if (sortProperty != null) {
+            sort = sortDir.equalsIgnoreCase("desc") ? 
+                   Sort.by(sortProperty).descending() : 
+                   Sort.by(sortProperty).ascending();
         }
         
-        Page<Product> productPage;
-        if (search != null && !search.trim().isEmpty()) {
+        Pageable pageable = PageRequest.of(page, size, sort);
+        
+        Page<ProductSummary> productPage;
+        if (productService.isFacetIndexReady()) {
+            FacetedProductPage facetedPage = productService.findByFacets(categoryId, minPrice, maxPrice,
+                    hasSearch ? search.trim() : null, pageable);
+            productPage = facetedPage.getProducts();
+            model.addAttribute("categoryCounts", facetedPage.getCategoryCounts());
+            model.addAttribute("priceBuckets", facetedPage.getPriceBucketCounts());
+        } else if (hasSearch) {
             productPage = productService.searchByName(search.trim(), pageable);
         } else if (categoryId != null || minPrice != null || maxPrice != null) {
+            Category category = null;
+            if (categoryId != null) {
+                category = categoryService.findById(categoryId).orElse(null);
+            }
             productPage = productService.findByFilters(category, minPrice, maxPrice, null, pageable);
         } else {
             productPage = productService.findAllActive(pageable);
         }
         
-        List<Category> categories = categoryService.findAllActive();
+        List<CategorySummary> categories = categoryCatalog.getSnapshot().getCategories();
         
         model.addAttribute("products", productPage);
         model.addAttribute("categories", categories);
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", productPage.getTotalPages());
-        model.addAttribute("sortBy", sortBy);
+        model.addAttribute("sortBy", sortProperty);
         model.addAttribute("sortDir", sortDir);
         model.addAttribute("search", search);
         model.addAttribute("selectedCategoryId", categoryId);
@@ -87,9 +121,10 @@ public class HomeController {
 
     @GetMapping("/products/{id}")
     public String productDetail(@PathVariable Long id, Model model) {
-        Optional<Product> productOpt = productService.findById(id);
+        Optional<ProductDetail> productOpt = productService.findDetailById(id);
         if (productOpt.isPresent()) {
             model.addAttribute("product", productOpt.get());
+            model.addAttribute("relatedProducts", productRecommender.relatedTo(id, 4));
             return "product-detail";
         }
         return "redirect:/products";
@@ -97,7 +132,7 @@ public class HomeController {
 
     @GetMapping("/categories")
     public String categories(Model model) {
-        List<Category> categories = categoryService.findAllActive();
+        List<CategorySummary> categories = categoryCatalog.getSnapshot().getCategories();
         model.addAttribute("categories", categories);
         return "categories";
     }
@@ -106,20 +141,34 @@ public class HomeController {
     public String categoryProducts(@PathVariable Long id,
                                   @RequestParam(defaultValue = "0") int page,
                                   @RequestParam(defaultValue = "12") int size,
+                                  @RequestParam(required = false) String cursor,
                                   Model model) {
-        Optional<Category> categoryOpt = categoryService.findById(id);
+        Optional<CategorySummary> categoryOpt = categoryCatalog.getSnapshot().findById(id);
         if (categoryOpt.isPresent()) {
-            Category category = categoryOpt.get();
-            Pageable pageable = PageRequest.of(page, size);
-            Page<Product> products = productService.findByCategory(category, pageable);
-            
+            CategorySummary category = categoryOpt.get();
             model.addAttribute("category", category);
-            model.addAttribute("products", products);
-            model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", products.getTotalPages());
+            model.addAttribute("size", size);
+            model.addAttribute("bestSellers", bestSellerLeaderboard.topSellers(BestSellerLeaderboard.Window.WEEK, id, 4));
+            
+            if (page > 0 && cursor == null) {
+                // Old page-numbered links still work, but without the COUNT query
+                Slice<ProductSummary> products = productService.findByCategorySlice(id,
+                        PageRequest.of(page, size, Sort.by("name", "id").ascending()));
+                model.addAttribute("products", products);
+                model.addAttribute("currentPage", page);
+                model.addAttribute("nextPage", products.hasNext() ? page + 1 : null);
+            } else {
+                try {
+                    ProductCursorPage products = productService.scrollByCategory(id, cursor, size);
+                    model.addAttribute("products", products);
+                    model.addAttribute("nextCursor", products.getNextCursor());
+                } catch (IllegalArgumentException e) {
+                    return "redirect:/categories/" + id;
+                }
+            }
             
             return "category-products";
         }
         return "redirect:/categories";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.dto.Suggestion;
+import com.ecommerce.service.BestSellerLeaderboard;
+import com.ecommerce.service.ProductSuggester;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/products")
+public class ProductApiController {
+
+    // Leaderboards are capped so a large limit cannot turn a memory read into a big response
+    private static final int MAX_BEST_SELLERS = 50;
+
+    @Autowired
+    private ProductSuggester productSuggester;
+
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(@RequestParam(defaultValue = "") String q,
+                                                    @RequestParam(defaultValue = "8") int limit) {
+        int capped = Math.max(0, Math.min(limit, ProductSuggester.MAX_SUGGESTIONS));
+        return ResponseEntity.ok(productSuggester.suggest(q, capped));
+    }
+
+    @GetMapping("/best-sellers")
+    public ResponseEntity<List<ProductSummary>> bestSellers(@RequestParam(defaultValue = "WEEK") BestSellerLeaderboard.Window window,
+                                                            @RequestParam(required = false) Long categoryId,
+                                                            @RequestParam(defaultValue = "10") int limit) {
+        int capped = Math.max(0, Math.min(limit, MAX_BEST_SELLERS));
+        return ResponseEntity.ok(bestSellerLeaderboard.topSellers(window, categoryId, capped));
+    }
+}
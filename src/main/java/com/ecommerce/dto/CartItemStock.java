@@ -0,0 +1,36 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// A cart line together with the stock of its product, loaded for many lines at once to validate a batch update
+public class CartItemStock {
+
+    private final Long cartItemId;
+    private final Long productId;
+    private final String productName;
+    private final BigDecimal price;
+    private final int stockQuantity;
+    private final boolean active;
+
+    public CartItemStock(Long cartItemId, Long productId, String productName, BigDecimal price,
+                         Integer stockQuantity, Boolean active) {
+        this.cartItemId = cartItemId;
+        this.productId = productId;
+        this.productName = productName;
+        this.price = price;
+        this.stockQuantity = stockQuantity != null ? stockQuantity : 0;
+        this.active = Boolean.TRUE.equals(active);
+    }
+
+    public Long getCartItemId() { return cartItemId; }
+
+    public Long getProductId() { return productId; }
+
+    public String getProductName() { return productName; }
+
+    public BigDecimal getPrice() { return price; }
+
+    public int getStockQuantity() { return stockQuantity; }
+
+    public boolean isActive() { return active; }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.dto;
+
+// One line of a batch cart update; a quantity of 0 or less removes the line
+public class CartItemUpdate {
+
+    private Long cartItemId;
+    private int quantity;
+
+    public CartItemUpdate() {}
+
+    public CartItemUpdate(Long cartItemId, int quantity) {
+        this.cartItemId = cartItemId;
+        this.quantity = quantity;
+    }
+
+    public Long getCartItemId() { return cartItemId; }
+    public void setCartItemId(Long cartItemId) { this.cartItemId = cartItemId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+}
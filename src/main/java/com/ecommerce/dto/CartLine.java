@@ -0,0 +1,27 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// One product line of a cart as the write-behind store keeps it; a quantity of 0 marks a line to delete
+public class CartLine {
+
+    private final Long productId;
+    private final int quantity;
+    private final BigDecimal price;
+
+    public CartLine(Long productId, Integer quantity, BigDecimal price) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    public Long getProductId() { return productId; }
+
+    public int getQuantity() { return quantity; }
+
+    public BigDecimal getPrice() { return price; }
+
+    public boolean isRemoved() {
+        return quantity <= 0;
+    }
+}
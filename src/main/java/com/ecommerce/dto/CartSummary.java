@@ -0,0 +1,33 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// Line count, unit count and total of one user's cart, cached so the badge and totals never load cart rows
+public class CartSummary {
+
+    private static final CartSummary EMPTY = new CartSummary(0L, 0L, BigDecimal.ZERO);
+
+    private final long lineCount;
+    private final long quantity;
+    private final BigDecimal total;
+
+    public CartSummary(Long lineCount, Long quantity, BigDecimal total) {
+        this.lineCount = lineCount != null ? lineCount : 0L;
+        this.quantity = quantity != null ? quantity : 0L;
+        this.total = total != null ? total : BigDecimal.ZERO;
+    }
+
+    public static CartSummary empty() {
+        return EMPTY;
+    }
+
+    public long getLineCount() { return lineCount; }
+
+    public long getQuantity() { return quantity; }
+
+    public BigDecimal getTotal() { return total; }
+
+    public boolean isEmpty() {
+        return lineCount == 0;
+    }
+}
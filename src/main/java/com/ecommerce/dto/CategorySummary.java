@@ -0,0 +1,29 @@
+package com.ecommerce.dto;
+
+// Read-only view of an active category, shared by every request through the category snapshot
+public class CategorySummary {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final String imageUrl;
+    private final long productCount;
+
+    public CategorySummary(Long id, String name, String description, String imageUrl, long productCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.imageUrl = imageUrl;
+        this.productCount = productCount;
+    }
+
+    public Long getId() { return id; }
+
+    public String getName() { return name; }
+
+    public String getDescription() { return description; }
+
+    public String getImageUrl() { return imageUrl; }
+
+    public long getProductCount() { return productCount; }
+}
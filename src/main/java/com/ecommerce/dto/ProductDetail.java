@@ -0,0 +1,58 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Immutable copy of one product for the detail page and stock checks, safe to share through the product cache
+public class ProductDetail {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final BigDecimal price;
+    private final String imageUrl;
+    private final int stockQuantity;
+    private final boolean active;
+    private final Long categoryId;
+    private final String categoryName;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public ProductDetail(Long id, String name, String description, BigDecimal price, String imageUrl,
+                         Integer stockQuantity, Boolean active, Long categoryId, String categoryName,
+                         LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.imageUrl = imageUrl;
+        this.stockQuantity = stockQuantity != null ? stockQuantity : 0;
+        this.active = Boolean.TRUE.equals(active);
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getId() { return id; }
+
+    public String getName() { return name; }
+
+    public String getDescription() { return description; }
+
+    public BigDecimal getPrice() { return price; }
+
+    public String getImageUrl() { return imageUrl; }
+
+    public int getStockQuantity() { return stockQuantity; }
+
+    public boolean isActive() { return active; }
+
+    public Long getCategoryId() { return categoryId; }
+
+    public String getCategoryName() { return categoryName; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,64 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Read-only view of a product for listing pages, loaded with its category name in a single query
+public class ProductSummary {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final BigDecimal price;
+    private final String imageUrl;
+    private final Integer stockQuantity;
+    private final Long categoryId;
+    private final String categoryName;
+    private final LocalDateTime updatedAt;
+    private final long ratingSum;
+    private final long ratingCount;
+
+    public ProductSummary(Long id, String name, String description, BigDecimal price, String imageUrl,
+                          Integer stockQuantity, Long categoryId, String categoryName, LocalDateTime updatedAt,
+                          Long ratingSum, Long ratingCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.imageUrl = imageUrl;
+        this.stockQuantity = stockQuantity;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.updatedAt = updatedAt;
+        this.ratingSum = ratingSum != null ? ratingSum : 0L;
+        this.ratingCount = ratingCount != null ? ratingCount : 0L;
+    }
+
+    public Long getId() { return id; }
+
+    public String getName() { return name; }
+
+    public String getDescription() { return description; }
+
+    public BigDecimal getPrice() { return price; }
+
+    public String getImageUrl() { return imageUrl; }
+
+    public Integer getStockQuantity() { return stockQuantity; }
+
+    public Long getCategoryId() { return categoryId; }
+
+    public String getCategoryName() { return categoryName; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+
+    public long getRatingCount() { return ratingCount; }
+
+    public double getAverageRating() {
+        return ratingCount == 0 ? 0.0 : (double) ratingSum / ratingCount;
+    }
+
+    public boolean isInStock() {
+        return stockQuantity != null && stockQuantity > 0;
+    }
+}
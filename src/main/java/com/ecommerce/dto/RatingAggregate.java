@@ -0,0 +1,83 @@
+package com.ecommerce.dto;
+
+import java.util.Arrays;
+
+// Review totals for one product: the stored aggregate, a recount from the reviews table,
+// or a pending change to apply on top of the stored values
+public class RatingAggregate {
+
+    private final Long productId;
+    private final long ratingSum;
+    private final long ratingCount;
+    private final long[] histogram; // index 0 holds the number of 1-star reviews
+
+    public RatingAggregate(Long productId, Long ratingSum, Long ratingCount, Long rating1Count, Long rating2Count,
+                           Long rating3Count, Long rating4Count, Long rating5Count) {
+        this(productId, valueOf(ratingSum), valueOf(ratingCount), new long[] {
+                valueOf(rating1Count), valueOf(rating2Count), valueOf(rating3Count),
+                valueOf(rating4Count), valueOf(rating5Count)});
+    }
+
+    private RatingAggregate(Long productId, long ratingSum, long ratingCount, long[] histogram) {
+        this.productId = productId;
+        this.ratingSum = ratingSum;
+        this.ratingCount = ratingCount;
+        this.histogram = histogram;
+    }
+
+    public static RatingAggregate empty(Long productId) {
+        return new RatingAggregate(productId, 0, 0, new long[5]);
+    }
+
+    /**
+     * Add or take away one review
+     * @param rating the review's rating, 1 to 5
+     * @param sign 1 when the review is added, -1 when it is removed
+     * @return a new aggregate including the change
+     */
+    public RatingAggregate plus(int rating, int sign) {
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+        long[] next = histogram.clone();
+        next[rating - 1] += sign;
+        return new RatingAggregate(productId, ratingSum + (long) rating * sign, ratingCount + sign, next);
+    }
+
+    public boolean isZero() {
+        return equals(empty(productId));
+    }
+
+    public Long getProductId() { return productId; }
+
+    public long getRatingSum() { return ratingSum; }
+
+    public long getRatingCount() { return ratingCount; }
+
+    public long getRating1Count() { return histogram[0]; }
+
+    public long getRating2Count() { return histogram[1]; }
+
+    public long getRating3Count() { return histogram[2]; }
+
+    public long getRating4Count() { return histogram[3]; }
+
+    public long getRating5Count() { return histogram[4]; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RatingAggregate other)) return false;
+        return ratingSum == other.ratingSum && ratingCount == other.ratingCount
+                && Arrays.equals(histogram, other.histogram);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(ratingSum) + Arrays.hashCode(histogram);
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+}
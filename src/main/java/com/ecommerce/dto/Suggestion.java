@@ -0,0 +1,34 @@
+package com.ecommerce.dto;
+
+// One typeahead completion, either a product or a category
+public class Suggestion {
+
+    private final String text;
+    private final Type type;
+    private final Long id;
+    private final long popularity;
+
+    public Suggestion(String text, Type type, Long id, long popularity) {
+        this.text = text;
+        this.type = type;
+        this.id = id;
+        this.popularity = popularity;
+    }
+
+    public String getText() { return text; }
+
+    public Type getType() { return type; }
+
+    public Long getId() { return id; }
+
+    public long getPopularity() { return popularity; }
+
+    public String getUrl() {
+        return type == Type.CATEGORY ? "/categories/" + id : "/products/" + id;
+    }
+
+    public enum Type {
+        PRODUCT,
+        CATEGORY
+    }
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.event;
+
+public class CategoryChangedEvent {
+
+    private final Long categoryId;
+    private final boolean deleted;
+
+    public CategoryChangedEvent(Long categoryId, boolean deleted) {
+        this.categoryId = categoryId;
+        this.deleted = deleted;
+    }
+
+    public Long getCategoryId() { return categoryId; }
+
+    public boolean isDeleted() { return deleted; }
+}
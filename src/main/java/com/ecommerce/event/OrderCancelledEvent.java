@@ -0,0 +1,23 @@
+package com.ecommerce.event;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public class OrderCancelledEvent {
+
+    private final Long orderId;
+    private final Map<Long, Integer> quantities; // product id -> units given back; empty if it never took stock
+    private final LocalDateTime orderDate;
+
+    public OrderCancelledEvent(Long orderId, Map<Long, Integer> quantities, LocalDateTime orderDate) {
+        this.orderId = orderId;
+        this.quantities = Map.copyOf(quantities);
+        this.orderDate = orderDate;
+    }
+
+    public Long getOrderId() { return orderId; }
+
+    public Map<Long, Integer> getQuantities() { return quantities; }
+
+    public LocalDateTime getOrderDate() { return orderDate; }
+}
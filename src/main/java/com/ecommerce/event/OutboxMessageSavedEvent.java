@@ -0,0 +1,13 @@
+package com.ecommerce.event;
+
+// Lets the outbox worker start on a message as soon as it is committed instead of at its next poll
+public class OutboxMessageSavedEvent {
+
+    private final Long messageId;
+
+    public OutboxMessageSavedEvent(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public Long getMessageId() { return messageId; }
+}
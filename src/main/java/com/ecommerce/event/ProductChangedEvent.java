@@ -0,0 +1,45 @@
+package com.ecommerce.event;
+
+import com.ecommerce.model.Product;
+
+public class ProductChangedEvent {
+
+    private final Long productId;
+    private final Product product; // null when the product was deleted or only its aggregates moved
+    private final ChangeType type;
+
+    public ProductChangedEvent(Product product, ChangeType type) {
+        this.productId = product.getId();
+        this.product = product;
+        this.type = type;
+    }
+
+    public ProductChangedEvent(Long productId) {
+        this(productId, ChangeType.DELETED);
+    }
+
+    public ProductChangedEvent(Long productId, ChangeType type) {
+        this.productId = productId;
+        this.product = null;
+        this.type = type;
+    }
+
+    public Long getProductId() { return productId; }
+
+    public Product getProduct() { return product; }
+
+    public ChangeType getType() { return type; }
+
+    // Stock and rating movements change what a product shows, but not which listings, facets or
+    // search results it belongs to
+    public boolean isListingChange() {
+        return type == ChangeType.SAVED || type == ChangeType.DELETED;
+    }
+
+    public enum ChangeType {
+        SAVED,
+        STOCK,
+        RATING,
+        DELETED
+    }
+}
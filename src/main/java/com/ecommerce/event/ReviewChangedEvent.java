@@ -0,0 +1,20 @@
+package com.ecommerce.event;
+
+public class ReviewChangedEvent {
+
+    private final Long productId;
+    private final Integer oldRating; // null when the review was created
+    private final Integer newRating; // null when the review was deleted
+
+    public ReviewChangedEvent(Long productId, Integer oldRating, Integer newRating) {
+        this.productId = productId;
+        this.oldRating = oldRating;
+        this.newRating = newRating;
+    }
+
+    public Long getProductId() { return productId; }
+
+    public Integer getOldRating() { return oldRating; }
+
+    public Integer getNewRating() { return newRating; }
+}
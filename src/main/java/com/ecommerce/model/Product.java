@@ -10,7 +10,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_active_name", columnList = "active, name, id"),
+        @Index(name = "idx_products_category_name", columnList = "category_id, active, name, id")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,6 +46,29 @@ public class Product {
 
     private boolean active = true;
 
+    // Review aggregates. Only the bulk updates in ProductRepository write them, so saving a product
+    // can never overwrite a concurrent increment with the stale values it loaded.
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    private long ratingSum;
+
+    @Column(name = "rating_count", nullable = false, updatable = false)
+    private long ratingCount;
+
+    @Column(name = "rating_1_count", nullable = false, updatable = false)
+    private long rating1Count;
+
+    @Column(name = "rating_2_count", nullable = false, updatable = false)
+    private long rating2Count;
+
+    @Column(name = "rating_3_count", nullable = false, updatable = false)
+    private long rating3Count;
+
+    @Column(name = "rating_4_count", nullable = false, updatable = false)
+    private long rating4Count;
+
+    @Column(name = "rating_5_count", nullable = false, updatable = false)
+    private long rating5Count;
+
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<CartItem> cartItems = new HashSet<>();
 
@@ -118,13 +144,16 @@ public class Product {
         return stockQuantity != null && stockQuantity > 0;
     }
 
+    public long getRatingSum() { return ratingSum; }
+
+    public long getRatingCount() { return ratingCount; }
+
+    // Number of reviews per star, 1-star first
+    public long[] getRatingHistogram() {
+        return new long[] {rating1Count, rating2Count, rating3Count, rating4Count, rating5Count};
+    }
+
     public double getAverageRating() {
-        if (reviews.isEmpty()) {
-            return 0.0;
-        }
-        return reviews.stream()
-                .mapToInt(Review::getRating)
-                .average()
-                .orElse(0.0);
+        return ratingCount == 0 ? 0.0 : (double) ratingSum / ratingCount;
     }
 }
\ No newline at end of file
@@ -1,18 +1,55 @@
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.CartItemStock;
+import com.ecommerce.dto.CartLine;
+import com.ecommerce.dto.CartSummary;
 import com.ecommerce.model.CartItem;
 import com.ecommerce.model.User;
 import com.ecommerce.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+public interface CartItemRepository extends JpaRepository<CartItem, Long>, CartItemRepositoryCustom {
     List<CartItem> findByUser(User user);
+
+    // The whole cart with products and categories in one query, for the cart page and checkout
+    @Query("SELECT c FROM CartItem c JOIN FETCH c.product p LEFT JOIN FETCH p.category " +
+           "WHERE c.user.id = :userId ORDER BY c.id")
+    List<CartItem> findWithProductsByUserId(@Param("userId") Long userId);
+
     Optional<CartItem> findByUserAndProduct(User user, Product product);
-    void deleteByUser(User user);
-    void deleteByUserAndProduct(User user, Product product);
+
+    // Single statement; the derived deleteBy methods load every row and delete them one by one
+    @Modifying
+    @Query("DELETE FROM CartItem c WHERE c.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM CartItem c WHERE c.user.id = :userId AND c.product.id = :productId")
+    int deleteByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    Optional<CartItem> findByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT c.quantity FROM CartItem c WHERE c.user.id = :userId AND c.product.id = :productId")
+    Optional<Integer> findQuantityByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    @Query("SELECT new com.ecommerce.dto.CartSummary(COUNT(c), SUM(c.quantity), SUM(c.price * c.quantity)) " +
+           "FROM CartItem c WHERE c.user.id = :userId")
+    CartSummary summarizeByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.ecommerce.dto.CartLine(c.product.id, c.quantity, c.price) " +
+           "FROM CartItem c WHERE c.user.id = :userId ORDER BY c.id")
+    List<CartLine> findLinesByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new com.ecommerce.dto.CartItemStock(c.id, p.id, p.name, c.price, p.stockQuantity, p.active) " +
+           "FROM CartItem c JOIN c.product p WHERE c.user.id = :userId AND c.id IN :ids")
+    List<CartItemStock> findStockByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
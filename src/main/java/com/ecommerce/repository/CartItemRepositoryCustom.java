@@ -0,0 +1,37 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.CartLine;
+
+import java.util.List;
+import java.util.Map;
+
+public interface CartItemRepositoryCustom {
+
+    /**
+     * Add units of a product to a user's cart in one statement, inserting the line or increasing it.
+     * The product must be active and have stock for the whole resulting line; the line takes its current price.
+     * @param userId owner of the cart
+     * @param productId product to add
+     * @param quantity units to add, at least 1
+     * @return true if the cart changed, false if the product is missing, inactive or short of stock
+     */
+    boolean addOrIncrement(Long userId, Long productId, int quantity);
+
+    /**
+     * Write the final state of many cart lines as two JDBC batches, one of upserts and one of deletes
+     * @param linesByUser changed lines per user id; removed lines are deleted
+     */
+    void writeLines(Map<Long, List<CartLine>> linesByUser);
+
+    /**
+     * Set the quantity of many of a user's cart lines as JDBC batches; 0 or less deletes the line
+     * @param quantities new quantity per cart item id
+     */
+    void updateQuantities(Long userId, Map<Long, Integer> quantities);
+
+    /**
+     * Take units off many of a user's cart lines as JDBC batches; lines left with nothing are deleted
+     * @param quantities units to take off per product id
+     */
+    void decrementQuantities(Long userId, Map<Long, Integer> quantities);
+}
@@ -0,0 +1,150 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.CartLine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Plain JDBC writes on the (user_id, product_id) unique key. For add-to-cart the source row is only
+// produced when the product is active and can cover the existing line plus the new units, so
+// validation happens in the same statement as the write.
+public class CartItemRepositoryCustomImpl implements CartItemRepositoryCustom {
+
+    private static final String CANDIDATE =
+            "SELECT p.id AS product_id, p.price AS price FROM products p " +
+            "LEFT JOIN cart_items e ON e.user_id = :userId AND e.product_id = p.id " +
+            "WHERE p.id = :productId AND p.active = TRUE " +
+            "AND p.stock_quantity >= COALESCE(e.quantity, 0) + :quantity";
+
+    // Standard SQL MERGE (H2, and most other databases)
+    private static final String MERGE_UPSERT =
+            "MERGE INTO cart_items c USING (" + CANDIDATE + ") s " +
+            "ON c.user_id = :userId AND c.product_id = s.product_id " +
+            "WHEN MATCHED THEN UPDATE SET quantity = c.quantity + :quantity, price = s.price " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, product_id, quantity, price) " +
+            "VALUES (:userId, s.product_id, :quantity, s.price)";
+
+    // MySQL has no MERGE
+    private static final String MYSQL_UPSERT =
+            "INSERT INTO cart_items (user_id, product_id, quantity, price) " +
+            "SELECT :userId, s.product_id, :quantity, s.price FROM (" + CANDIDATE + ") s " +
+            "ON DUPLICATE KEY UPDATE quantity = cart_items.quantity + :quantity, price = s.price";
+
+    // Whole-line writes from the write-behind cart store (H2 and MySQL forms)
+    private static final String MERGE_LINE =
+            "MERGE INTO cart_items (user_id, product_id, quantity, price) KEY (user_id, product_id) VALUES (?, ?, ?, ?)";
+
+    private static final String MYSQL_LINE =
+            "INSERT INTO cart_items (user_id, product_id, quantity, price) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), price = VALUES(price)";
+
+    private static final String DELETE_LINE = "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?";
+
+    private static final String UPDATE_QUANTITY = "UPDATE cart_items SET quantity = ? WHERE id = ? AND user_id = ?";
+
+    private static final String DELETE_ITEM = "DELETE FROM cart_items WHERE id = ? AND user_id = ?";
+
+    // Deletes run first; a line shortened by the update could otherwise match the delete afterwards
+    private static final String DELETE_USED_UP =
+            "DELETE FROM cart_items WHERE user_id = ? AND product_id = ? AND quantity <= ?";
+
+    private static final String DECREMENT_QUANTITY =
+            "UPDATE cart_items SET quantity = quantity - ? WHERE user_id = ? AND product_id = ? AND quantity > ?";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private volatile Boolean mysql;
+
+    @Override
+    public boolean addOrIncrement(Long userId, Long productId, int quantity) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("productId", productId)
+                .addValue("quantity", quantity);
+        return jdbcTemplate.update(isMysql() ? MYSQL_UPSERT : MERGE_UPSERT, parameters) > 0;
+    }
+
+    @Override
+    public void writeLines(Map<Long, List<CartLine>> linesByUser) {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Map.Entry<Long, List<CartLine>> entry : linesByUser.entrySet()) {
+            for (CartLine line : entry.getValue()) {
+                if (line.isRemoved()) {
+                    deletes.add(new Object[]{entry.getKey(), line.getProductId()});
+                } else {
+                    upserts.add(new Object[]{entry.getKey(), line.getProductId(), line.getQuantity(), line.getPrice()});
+                }
+            }
+        }
+        JdbcOperations jdbc = jdbcTemplate.getJdbcOperations();
+        if (!deletes.isEmpty()) {
+            jdbc.batchUpdate(DELETE_LINE, deletes);
+        }
+        if (!upserts.isEmpty()) {
+            jdbc.batchUpdate(isMysql() ? MYSQL_LINE : MERGE_LINE, upserts);
+        }
+    }
+
+    @Override
+    public void updateQuantities(Long userId, Map<Long, Integer> quantities) {
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (entry.getValue() <= 0) {
+                deletes.add(new Object[]{entry.getKey(), userId});
+            } else {
+                updates.add(new Object[]{entry.getValue(), entry.getKey(), userId});
+            }
+        }
+        JdbcOperations jdbc = jdbcTemplate.getJdbcOperations();
+        if (!deletes.isEmpty()) {
+            jdbc.batchUpdate(DELETE_ITEM, deletes);
+        }
+        if (!updates.isEmpty()) {
+            jdbc.batchUpdate(UPDATE_QUANTITY, updates);
+        }
+    }
+
+    @Override
+    public void decrementQuantities(Long userId, Map<Long, Integer> quantities) {
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            deletes.add(new Object[]{userId, entry.getKey(), entry.getValue()});
+            updates.add(new Object[]{entry.getValue(), userId, entry.getKey(), entry.getValue()});
+        }
+        if (deletes.isEmpty()) {
+            return;
+        }
+        JdbcOperations jdbc = jdbcTemplate.getJdbcOperations();
+        jdbc.batchUpdate(DELETE_USED_UP, deletes);
+        jdbc.batchUpdate(DECREMENT_QUANTITY, updates);
+    }
+
+    private boolean isMysql() {
+        Boolean result = mysql;
+        if (result == null) {
+            try {
+                String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+                result = product.toLowerCase().contains("mysql");
+            } catch (Exception e) {
+                throw new RuntimeException("Could not determine database type", e);
+            }
+            mysql = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.IdempotencyKey;
+import com.ecommerce.model.Order;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    // One lookup on uk_idempotency_keys_user_key, joined to the order it produced
+    @Query("SELECT o FROM IdempotencyKey k JOIN Order o ON o.id = k.orderId " +
+           "WHERE k.userId = :userId AND k.key = :key AND k.expiresAt > :now")
+    Optional<Order> findOrder(@Param("userId") Long userId, @Param("key") String key, @Param("now") LocalDateTime now);
+
+    // Frees an expired key the cleanup has not reached yet, so it can be used again
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.userId = :userId AND k.key = :key AND k.expiresAt <= :now")
+    int deleteExpired(@Param("userId") Long userId, @Param("key") String key, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -3,11 +3,24 @@ package com.ecommerce.repository;
 import com.ecommerce.model.OrderItem;
 import com.ecommerce.model.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     List<OrderItem> findByOrder(Order order);
+
+    @Query("SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi GROUP BY oi.product.id")
+    List<Object[]> sumQuantityByProduct();
+
+    @Query("SELECT oi.order.id, oi.product.id FROM OrderItem oi ORDER BY oi.order.id")
+    List<Object[]> findOrderProductPairs();
+
+    @Query("SELECT oi.product.id, o.orderDate, oi.quantity FROM OrderItem oi JOIN oi.order o " +
+           "WHERE o.orderDate >= :since AND o.status <> :excluded")
+    List<Object[]> findSalesSince(@Param("since") LocalDateTime since, @Param("excluded") Order.OrderStatus excluded);
 }
\ No newline at end of file
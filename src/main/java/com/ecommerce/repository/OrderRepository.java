@@ -2,12 +2,21 @@ package com.ecommerce.repository;
 
 import com.ecommerce.model.Order;
 import com.ecommerce.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -15,4 +24,26 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserOrderByOrderDateDesc(User user);
     Page<Order> findByStatus(Order.OrderStatus status, Pageable pageable);
     Page<Order> findAllByOrderByOrderDateDesc(Pageable pageable);
+
+    // Order history pages, newest first; both walk idx_orders_user_date
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findFirstByUserId(@Param("userId") Long userId, Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId " +
+           "AND (o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.id < :id)) " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findByUserIdBefore(@Param("userId") Long userId,
+                                   @Param("orderDate") LocalDateTime orderDate,
+                                   @Param("id") Long id,
+                                   Limit limit);
+
+    // Second query of a history page: fills in the items and products of orders already loaded
+    @EntityGraph(attributePaths = {"orderItems", "orderItems.product"})
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Serializes order finalization and cancellation on the same order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findForUpdateById(@Param("id") Long id);
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.OutboxMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    @Query("SELECT m.id FROM OutboxMessage m WHERE m.processedAt IS NULL AND m.failedAt IS NULL " +
+           "AND m.availableAt <= :now ORDER BY m.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Limit limit);
+
+    // Takes a due message for one worker until leaseUntil; 0 when it is done or another worker has it
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.availableAt = :leaseUntil " +
+           "WHERE m.id = :id AND m.processedAt IS NULL AND m.failedAt IS NULL AND m.availableAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // A user's asynchronous checkout the worker has not finished yet; given up messages do not count
+    @Query("SELECT COUNT(m) > 0 FROM OutboxMessage m, Order o " +
+           "WHERE m.type = com.ecommerce.model.OutboxMessage$Type.ORDER_PLACED AND m.aggregateId = o.id " +
+           "AND o.user.id = :userId AND m.processedAt IS NULL AND m.failedAt IS NULL")
+    boolean existsPendingCheckout(@Param("userId") Long userId);
+
+    boolean existsByTypeAndAggregateIdAndProcessedAtIsNull(OutboxMessage.Type type, Long aggregateId);
+}
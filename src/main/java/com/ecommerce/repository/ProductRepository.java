@@ -1,34 +1,139 @@
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.ProductDetail;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.dto.RatingAggregate;
 import com.ecommerce.model.Product;
 import com.ecommerce.model.Category;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
-    Page<Product> findByActiveTrue(Pageable pageable);
-    Page<Product> findByActiveTrueAndCategory(Category category, Pageable pageable);
-    Page<Product> findByActiveTrueAndNameContainingIgnoreCase(String name, Pageable pageable);
-    
-    @Query("SELECT p FROM Product p WHERE p.active = true AND " +
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+
+    // Listing queries return read-only summaries with the category name joined in, never managed entities
+    String SUMMARY = "SELECT new com.ecommerce.dto.ProductSummary(p.id, p.name, p.description, p.price, " +
+                     "p.imageUrl, p.stockQuantity, c.id, c.name, p.updatedAt, p.ratingSum, p.ratingCount) " +
+                     "FROM Product p LEFT JOIN p.category c ";
+
+    @Query(value = SUMMARY + "WHERE p.active = true",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.active = true")
+    Page<ProductSummary> findActiveSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY + "WHERE p.active = true AND LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.active = true AND LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))")
+    Page<ProductSummary> findActiveSummariesByName(@Param("name") String name, Pageable pageable);
+
+    @Query(SUMMARY + "WHERE p.id IN :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Count-free variants for browsing, and keyset scrolling that seeks on (name, id) instead of using OFFSET
+    @Query(SUMMARY + "WHERE p.active = true")
+    Slice<ProductSummary> findActiveSummarySlice(Pageable pageable);
+
+    @Query(SUMMARY + "WHERE p.active = true AND c.id = :categoryId")
+    Slice<ProductSummary> findActiveSummarySliceByCategory(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(SUMMARY + "WHERE p.active = true AND (:categoryId IS NULL OR c.id = :categoryId) " +
+           "ORDER BY p.name ASC, p.id ASC")
+    List<ProductSummary> findFirstActiveSummariesByName(@Param("categoryId") Long categoryId, Limit limit);
+
+    @Query(SUMMARY + "WHERE p.active = true AND (:categoryId IS NULL OR c.id = :categoryId) " +
+           "AND (p.name > :name OR (p.name = :name AND p.id > :id)) " +
+           "ORDER BY p.name ASC, p.id ASC")
+    List<ProductSummary> findActiveSummariesByNameAfter(@Param("categoryId") Long categoryId,
+                                                       @Param("name") String name,
+                                                       @Param("id") Long id,
+                                                       Limit limit);
+
+    @Query(value = SUMMARY + "WHERE p.active = true AND " +
+           "(:category IS NULL OR p.category = :category) AND " +
+           "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
+           "(:maxPrice IS NULL OR p.price <= :maxPrice) AND " +
+           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')))",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.active = true AND " +
            "(:category IS NULL OR p.category = :category) AND " +
            "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
            "(:maxPrice IS NULL OR p.price <= :maxPrice) AND " +
            "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')))")
-    Page<Product> findByFilters(@Param("category") Category category,
-                               @Param("minPrice") BigDecimal minPrice,
-                               @Param("maxPrice") BigDecimal maxPrice,
-                               @Param("name") String name,
-                               Pageable pageable);
-    
-    List<Product> findTop8ByActiveTrueOrderByCreatedAtDesc();
+    Page<ProductSummary> findByFilters(@Param("category") Category category,
+                                      @Param("minPrice") BigDecimal minPrice,
+                                      @Param("maxPrice") BigDecimal maxPrice,
+                                      @Param("name") String name,
+                                      Pageable pageable);
+
+    @Query(SUMMARY + "WHERE p.active = true ORDER BY p.createdAt DESC")
+    List<ProductSummary> findLatestActiveSummaries(Limit limit);
+
+    @Query(SUMMARY + "WHERE p.active = true")
+    List<ProductSummary> findAllActiveSummaries();
+
     List<Product> findByActiveTrueAndStockQuantityGreaterThan(Integer minStock);
-}
\ No newline at end of file
+
+    @Query("SELECT p.category.id, COUNT(p) FROM Product p WHERE p.active = true AND p.category IS NOT NULL GROUP BY p.category.id")
+    List<Object[]> countActiveByCategory();
+
+    @EntityGraph(attributePaths = "category")
+    Optional<Product> findWithCategoryById(Long id);
+
+    // What the product cache holds: a flat, immutable copy rather than the entity
+    @Query("SELECT new com.ecommerce.dto.ProductDetail(p.id, p.name, p.description, p.price, p.imageUrl, " +
+           "p.stockQuantity, p.active, c.id, c.name, p.createdAt, p.updatedAt) " +
+           "FROM Product p LEFT JOIN p.category c WHERE p.id = :id")
+    Optional<ProductDetail> findDetailById(@Param("id") Long id);
+
+    @Query("SELECT new com.ecommerce.dto.RatingAggregate(p.id, p.ratingSum, p.ratingCount, p.rating1Count, " +
+           "p.rating2Count, p.rating3Count, p.rating4Count, p.rating5Count) FROM Product p")
+    List<RatingAggregate> findRatingAggregates();
+
+    // Relative update, so concurrent deltas for the same product add up instead of overwriting each other.
+    // updatedAt moves too, which is what versions the cached product cards.
+    @Modifying
+    @Query("UPDATE Product p SET p.ratingSum = p.ratingSum + :#{#delta.ratingSum}, " +
+           "p.ratingCount = p.ratingCount + :#{#delta.ratingCount}, " +
+           "p.rating1Count = p.rating1Count + :#{#delta.rating1Count}, " +
+           "p.rating2Count = p.rating2Count + :#{#delta.rating2Count}, " +
+           "p.rating3Count = p.rating3Count + :#{#delta.rating3Count}, " +
+           "p.rating4Count = p.rating4Count + :#{#delta.rating4Count}, " +
+           "p.rating5Count = p.rating5Count + :#{#delta.rating5Count}, " +
+           "p.updatedAt = :updatedAt WHERE p.id = :#{#delta.productId}")
+    int applyRatingDelta(@Param("delta") RatingAggregate delta, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.ratingSum = :#{#totals.ratingSum}, " +
+           "p.ratingCount = :#{#totals.ratingCount}, " +
+           "p.rating1Count = :#{#totals.rating1Count}, " +
+           "p.rating2Count = :#{#totals.rating2Count}, " +
+           "p.rating3Count = :#{#totals.rating3Count}, " +
+           "p.rating4Count = :#{#totals.rating4Count}, " +
+           "p.rating5Count = :#{#totals.rating5Count}, " +
+           "p.updatedAt = :updatedAt WHERE p.id = :#{#totals.productId}")
+    int setRatingAggregate(@Param("totals") RatingAggregate totals, @Param("updatedAt") LocalDateTime updatedAt);
+
+    // The stored stock column, read without flushing first, so a product being saved can be compared with it
+    @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+    @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id")
+    Optional<Integer> findStockQuantityById(@Param("id") Long id);
+
+    // Displayed stock of a sharded product; only written when the shard total actually moved
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = :stock, p.updatedAt = :updatedAt " +
+           "WHERE p.id = :id AND p.stockQuantity <> :stock")
+    int setDisplayedStock(@Param("id") Long id, @Param("stock") int stock, @Param("updatedAt") LocalDateTime updatedAt);
+}
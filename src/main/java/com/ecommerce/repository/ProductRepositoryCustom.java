@@ -0,0 +1,23 @@
+package com.ecommerce.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Take units from many products as one JDBC batch of conditional updates; a product only loses stock
+     * if it has enough, so concurrent checkouts can neither oversell nor lose each other's updates
+     * @param quantities units to take per product id
+     * @param updatedAt new modification time of every product that changed
+     * @return ids of the products that did not have enough stock (or no longer exist)
+     */
+    List<Long> decrementStock(Map<Long, Integer> quantities, LocalDateTime updatedAt);
+
+    /**
+     * Give units back to many products as one JDBC batch, the counterpart of {@link #decrementStock}
+     * @return ids of the products that no longer exist
+     */
+    List<Long> incrementStock(Map<Long, Integer> quantities, LocalDateTime updatedAt);
+}
@@ -0,0 +1,79 @@
+package com.ecommerce.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Stock moves as relative, conditional updates rather than read-modify-write through the entity.
+// Rows are always touched in product id order, so two orders sharing products cannot deadlock.
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final String DECREMENT =
+            "UPDATE products SET stock_quantity = stock_quantity - ?, updated_at = ? WHERE id = ? AND stock_quantity >= ?";
+
+    private static final String INCREMENT =
+            "UPDATE products SET stock_quantity = stock_quantity + ?, updated_at = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Set once the driver answers a batch with SUCCESS_NO_INFO; from then on each row is its own statement
+    private volatile boolean unbatched;
+
+    @Override
+    public List<Long> decrementStock(Map<Long, Integer> quantities, LocalDateTime updatedAt) {
+        Timestamp timestamp = Timestamp.valueOf(updatedAt);
+        List<Long> ids = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            ids.add(entry.getKey());
+            rows.add(new Object[]{entry.getValue(), timestamp, entry.getKey(), entry.getValue()});
+        }
+        return unchanged(DECREMENT, ids, rows);
+    }
+
+    @Override
+    public List<Long> incrementStock(Map<Long, Integer> quantities, LocalDateTime updatedAt) {
+        Timestamp timestamp = Timestamp.valueOf(updatedAt);
+        List<Long> ids = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            ids.add(entry.getKey());
+            rows.add(new Object[]{entry.getValue(), timestamp, entry.getKey()});
+        }
+        return unchanged(INCREMENT, ids, rows);
+    }
+
+    // Runs the updates and returns the ids whose row was not updated. Only a count of exactly 1 is success.
+    private List<Long> unchanged(String sql, List<Long> ids, List<Object[]> rows) {
+        List<Long> result = new ArrayList<>();
+        if (unbatched) {
+            for (int i = 0; i < rows.size(); i++) {
+                if (jdbcTemplate.update(sql, rows.get(i)) != 1) {
+                    result.add(ids.get(i));
+                }
+            }
+            return result;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sql, rows);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                // The batch has run, so re-running a row would apply it twice; fail the caller's transaction
+                // so it rolls the batch back, and let later calls run unbatched where counts are exact
+                unbatched = true;
+                throw new RuntimeException("The database did not report which stock updates succeeded");
+            }
+            if (counts[i] != 1) {
+                result.add(ids.get(i));
+            }
+        }
+        return result;
+    }
+}
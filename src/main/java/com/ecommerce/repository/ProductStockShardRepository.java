@@ -0,0 +1,40 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.ProductStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, Long> {
+
+    @Query("SELECT s FROM ProductStockShard s ORDER BY s.product.id, s.shard")
+    List<ProductStockShard> findAllOrdered();
+
+    @Query("SELECT s.product.id, SUM(s.quantity) FROM ProductStockShard s GROUP BY s.product.id")
+    List<Object[]> sumQuantityByProduct();
+
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.quantity = s.quantity - :quantity " +
+           "WHERE s.product.id = :productId AND s.shard = :shard AND s.quantity >= :quantity")
+    int take(@Param("productId") Long productId, @Param("shard") int shard, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.quantity = s.quantity + :quantity " +
+           "WHERE s.product.id = :productId AND s.shard = :shard")
+    int give(@Param("productId") Long productId, @Param("shard") int shard, @Param("quantity") int quantity);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShard s WHERE s.product.id = :productId ORDER BY s.shard")
+    List<ProductStockShard> findForUpdate(@Param("productId") Long productId);
+
+    @Modifying
+    @Query("DELETE FROM ProductStockShard s WHERE s.product.id = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
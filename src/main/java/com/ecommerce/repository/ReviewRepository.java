@@ -1,13 +1,16 @@
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.RatingAggregate;
 import com.ecommerce.model.Review;
 import com.ecommerce.model.Product;
 import com.ecommerce.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +18,10 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     Page<Review> findByProduct(Product product, Pageable pageable);
     Optional<Review> findByUserAndProduct(User user, Product product);
     boolean existsByUserAndProduct(User user, Product product);
+
+    @Query("SELECT new com.ecommerce.dto.RatingAggregate(r.product.id, SUM(r.rating), COUNT(r), " +
+           "SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END)) FROM Review r GROUP BY r.product.id")
+    List<RatingAggregate> aggregateRatingsByProduct();
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // user id, product id, quantity, expiry of every reservation still running
+    @Query("SELECT r.user.id, r.product.id, r.quantity, r.expiresAt FROM StockReservation r WHERE r.expiresAt > :now")
+    List<Object[]> findActive(@Param("now") LocalDateTime now);
+
+    @Query("SELECT r.product.id FROM StockReservation r WHERE r.user.id = :userId")
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.quantity = :quantity, r.expiresAt = :expiresAt " +
+           "WHERE r.user.id = :userId AND r.product.id = :productId")
+    int updateHold(@Param("userId") Long userId, @Param("productId") Long productId,
+                   @Param("quantity") int quantity, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.user.id = :userId AND r.product.id = :productId")
+    int deleteByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.user.id = :userId AND r.product.id IN :productIds")
+    int deleteByUserIdAndProductIdIn(@Param("userId") Long userId, @Param("productIds") Collection<Long> productIds);
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,235 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.event.OrderCancelledEvent;
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderItemRepository;
+import com.ecommerce.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Units sold per product over sliding windows, fed by the order stream. Each window is a ring of
+// time buckets plus running totals; when a bucket falls out of the window its counts are subtracted
+// from the totals, so neither reads nor writes ever aggregate order history.
+@Component
+public class BestSellerLeaderboard {
+
+    public enum Window {
+        HOUR(Duration.ofMinutes(5), 12),
+        DAY(Duration.ofHours(1), 24),
+        WEEK(Duration.ofHours(6), 28);
+
+        private final Duration bucket;
+        private final int bucketCount;
+
+        Window(Duration bucket, int bucketCount) {
+            this.bucket = bucket;
+            this.bucketCount = bucketCount;
+        }
+
+        public Duration getLength() {
+            return bucket.multipliedBy(bucketCount);
+        }
+    }
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ProductSummaryStore productSummaryStore;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Window, SlidingWindow> windows = newWindows();
+
+    // Moves on every change, including buckets expiring, so rendered leaderboards can be validated
+    private final AtomicLong version = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Window, SlidingWindow> next = newWindows();
+        LocalDateTime since = LocalDateTime.now().minus(Window.WEEK.getLength());
+        for (Object[] sale : orderItemRepository.findSalesSince(since, Order.OrderStatus.CANCELLED)) {
+            record(next, (Long) sale[0], (LocalDateTime) sale[1], (Integer) sale[2]);
+        }
+        lock.writeLock().lock();
+        try {
+            windows = next;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        apply(event.getQuantities(), event.getOrderDate(), 1);
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event) {
+        apply(event.getQuantities(), event.getOrderDate(), -1);
+    }
+
+    // Expires buckets on quiet stores too, where no order would otherwise move the windows forward
+    @Scheduled(fixedDelay = 60000)
+    public void advance() {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (SlidingWindow window : windows.values()) {
+                changed |= window.advance(now);
+            }
+            if (changed) {
+                version.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Best-selling active products in a window
+     * @param window the time window
+     * @param categoryId restrict to one category, or null for all products
+     * @param limit maximum number of products
+     * @return products by units sold, most first
+     */
+    public List<ProductSummary> topSellers(Window window, Long categoryId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] ranked = windows.get(window).ranked();
+            List<ProductSummary> result = new ArrayList<>(Math.min(limit, ranked.length));
+            for (int i = 0; i < ranked.length && result.size() < limit; i++) {
+                ProductSummary product = productSummaryStore.get(ranked[i]);
+                if (product != null && (categoryId == null || categoryId.equals(product.getCategoryId()))) {
+                    result.add(product);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void apply(Map<Long, Integer> quantities, LocalDateTime orderDate, int sign) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                record(windows, line.getKey(), orderDate, line.getValue() * sign);
+            }
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void record(Map<Window, SlidingWindow> windows, Long productId, LocalDateTime orderDate, int units) {
+        long time = orderDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (SlidingWindow window : windows.values()) {
+            window.add(productId, time, units);
+        }
+    }
+
+    private static Map<Window, SlidingWindow> newWindows() {
+        Map<Window, SlidingWindow> windows = new EnumMap<>(Window.class);
+        for (Window window : Window.values()) {
+            windows.put(window, new SlidingWindow(window));
+        }
+        return windows;
+    }
+
+    // A window covers its newest bucketCount buckets, so its real span is between
+    // (bucketCount - 1) and bucketCount buckets depending on how far into the newest one we are
+    private static final class SlidingWindow {
+        private final long bucketMillis;
+        private final LongIntHashMap[] buckets;
+        private final long[] bucketIndexes; // time bucket held by each slot, -1 when empty
+        private final LongIntHashMap totals = new LongIntHashMap();
+        private long newestIndex = Long.MIN_VALUE;
+        private volatile long[] ranked; // product ids by units sold, rebuilt by the first read after a change
+
+        SlidingWindow(Window window) {
+            bucketMillis = window.bucket.toMillis();
+            buckets = new LongIntHashMap[window.bucketCount];
+            bucketIndexes = new long[window.bucketCount];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongIntHashMap();
+            }
+            Arrays.fill(bucketIndexes, -1);
+        }
+
+        void add(long productId, long time, int units) {
+            long index = Math.floorDiv(time, bucketMillis);
+            if (index > newestIndex) {
+                advance(time);
+            }
+            if (index <= newestIndex - buckets.length) {
+                return; // already outside the window
+            }
+            int slot = (int) Math.floorMod(index, (long) buckets.length);
+            if (bucketIndexes[slot] != index) {
+                expire(slot);
+                bucketIndexes[slot] = index;
+            }
+            buckets[slot].addTo(productId, units);
+            totals.addTo(productId, units);
+            ranked = null;
+        }
+
+        boolean advance(long now) {
+            newestIndex = Math.max(newestIndex, Math.floorDiv(now, bucketMillis));
+            boolean expired = false;
+            for (int slot = 0; slot < buckets.length; slot++) {
+                if (bucketIndexes[slot] >= 0 && bucketIndexes[slot] <= newestIndex - buckets.length) {
+                    expire(slot);
+                    expired = true;
+                }
+            }
+            return expired;
+        }
+
+        long[] ranked() {
+            long[] current = ranked;
+            if (current == null) {
+                current = totals.topKeys(totals.size());
+                int sold = 0;
+                while (sold < current.length && totals.get(current[sold]) > 0) {
+                    sold++;
+                }
+                current = Arrays.copyOf(current, sold);
+                ranked = current;
+            }
+            return current;
+        }
+
+        private void expire(int slot) {
+            buckets[slot].forEach((productId, units) -> totals.addTo(productId, -units));
+            buckets[slot] = new LongIntHashMap();
+            bucketIndexes[slot] = -1;
+            ranked = null;
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.ecommerce.service;
 
+import com.ecommerce.config.CacheConfig;
+import com.ecommerce.dto.CartItemStock;
+import com.ecommerce.dto.CartItemUpdate;
+import com.ecommerce.dto.CartSummary;
 import com.ecommerce.model.CartItem;
 import com.ecommerce.model.User;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.CartItemRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -19,30 +30,74 @@ public class CartService {
     @Autowired
     private CartItemRepository cartItemRepository;
 
+    @Autowired
+    private StockReservationService stockReservations;
+
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    // Present only when app.cart.write-behind.enabled=true; cart writes then go to memory first
+    @Autowired(required = false)
+    private WriteBehindCartStore writeBehindCartStore;
+
     public List<CartItem> getCartItems(User user) {
-        return cartItemRepository.findByUser(user);
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.flush(user.getId());
+        }
+        return cartItemRepository.findWithProductsByUserId(user.getId());
     }
 
-    public CartItem addToCart(User user, Product product, int quantity) {
-        Optional<CartItem> existingCartItem = cartItemRepository.findByUserAndProduct(user, product);
-        
-        if (existingCartItem.isPresent()) {
-            CartItem cartItem = existingCartItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-            cartItem.setPrice(product.getPrice());
-            return cartItemRepository.save(cartItem);
-        } else {
-            CartItem cartItem = new CartItem(user, product, quantity);
-            return cartItemRepository.save(cartItem);
+    /**
+     * Add units of a product to the cart with a single upsert and hold the whole resulting line for the user
+     * @return false if the product is missing, inactive or cannot cover the resulting quantity
+     */
+    public boolean addToCart(Long userId, Long productId, int quantity) {
+        if (quantity < 1) {
+            throw new RuntimeException("Quantity must be at least 1");
         }
+        boolean added = writeBehindCartStore != null
+                ? writeBehindCartStore.add(userId, productId, quantity)
+                : cartItemRepository.addOrIncrement(userId, productId, quantity);
+        if (!added) {
+            return false;
+        }
+        // Set from the line rather than added to the hold, which may have expired since the line was created
+        int lineQuantity = writeBehindCartStore != null
+                ? writeBehindCartStore.quantityOf(userId, productId)
+                : cartItemRepository.findQuantityByUserIdAndProductId(userId, productId).orElse(quantity);
+        if (!stockReservations.hold(userId, productId, lineQuantity)) {
+            // Rolls the upsert back; memory is not part of the transaction
+            if (writeBehindCartStore != null) {
+                writeBehindCartStore.subtract(userId, productId, quantity);
+            }
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return false;
+        }
+        if (writeBehindCartStore == null) {
+            evictSummary(userId);
+        }
+        return true;
     }
 
-    public void updateCartItem(Long cartItemId, int quantity) {
-        Optional<CartItem> cartItemOpt = cartItemRepository.findById(cartItemId);
+    public void updateCartItem(Long userId, Long cartItemId, int quantity) {
+        // Rows must be current first: a line changed or removed in memory may not be written yet
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.flush(userId);
+        }
+        Optional<CartItem> cartItemOpt = cartItemRepository.findByIdAndUserId(cartItemId, userId);
         if (cartItemOpt.isPresent()) {
+            Product product = cartItemOpt.get().getProduct();
+            int stock = product.isActive() ? productService.getAvailableStock(product) : 0;
+            if (!stockReservations.hold(userId, product.getId(), quantity, stock)) {
+                throw new RuntimeException("Not enough stock available");
+            }
+        }
+        if (cartItemOpt.isPresent() && writeBehindCartStore != null) {
+            writeBehindCartStore.setQuantity(userId, cartItemOpt.get().getProduct().getId(), quantity);
+        } else if (cartItemOpt.isPresent()) {
             CartItem cartItem = cartItemOpt.get();
             if (quantity <= 0) {
                 cartItemRepository.delete(cartItem);
@@ -50,43 +105,170 @@ public class CartService {
                 cartItem.setQuantity(quantity);
                 cartItemRepository.save(cartItem);
             }
+            evictSummary(userId);
+        }
+    }
+
+    /**
+     * Apply many quantity changes and removals to a user's cart in one transaction, or none of them
+     * if any line is unknown or short of stock; the lines are read in one query, and each new quantity
+     * becomes the user's stock reservation for that product
+     * @param updates new quantities; 0 or less removes the line, and a later entry for a line wins
+     * @return error message per rejected cart item id, empty when the whole batch was applied
+     */
+    public Map<Long, String> updateCartItems(Long userId, List<CartItemUpdate> updates) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItemUpdate update : updates) {
+            if (update.getCartItemId() != null) {
+                quantities.put(update.getCartItemId(), Math.max(update.getQuantity(), 0));
+            }
+        }
+        if (quantities.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.flush(userId);
+        }
+
+        Map<Long, CartItemStock> lines = new HashMap<>();
+        for (CartItemStock line : cartItemRepository.findStockByUserIdAndIdIn(userId, quantities.keySet())) {
+            lines.put(line.getCartItemId(), line);
+        }
+        Map<Long, String> errors = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            CartItemStock line = lines.get(entry.getKey());
+            int quantity = entry.getValue();
+            if (line == null) {
+                errors.put(entry.getKey(), "Cart item not found");
+            } else if (quantity > 0 && !line.isActive()) {
+                errors.put(entry.getKey(), line.getProductName() + " is no longer available");
+            } else if (quantity > 0) {
+                // The stock came with the lines; looking each product up again would cost a query per line
+                int stock = productService.getAvailableStock(line.getProductId(), line.getStockQuantity());
+                if (!stockReservations.hold(userId, line.getProductId(), quantity, stock)) {
+                    errors.put(entry.getKey(), "Only " + stockReservations.available(userId, line.getProductId(), stock)
+                            + " of " + line.getProductName() + " available");
+                }
+            }
         }
+        if (!errors.isEmpty()) {
+            // Hands back what the accepted lines reserved
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return errors;
+        }
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (entry.getValue() == 0) {
+                stockReservations.release(userId, lines.get(entry.getKey()).getProductId());
+            }
+        }
+
+        if (writeBehindCartStore != null) {
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                writeBehindCartStore.setQuantity(userId, lines.get(entry.getKey()).getProductId(), entry.getValue());
+            }
+        } else {
+            cartItemRepository.updateQuantities(userId, quantities);
+            evictSummary(userId);
+        }
+        return errors;
     }
 
-    public void removeFromCart(Long cartItemId) {
-        cartItemRepository.deleteById(cartItemId);
+    public void removeFromCart(Long userId, Long cartItemId) {
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.flush(userId);
+        }
+        Optional<CartItem> cartItemOpt = cartItemRepository.findByIdAndUserId(cartItemId, userId);
+        if (cartItemOpt.isEmpty()) {
+            return;
+        }
+        Long productId = cartItemOpt.get().getProduct().getId();
+        stockReservations.release(userId, productId);
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.remove(userId, productId);
+        } else {
+            cartItemRepository.delete(cartItemOpt.get());
+            evictSummary(userId);
+        }
     }
 
     public void removeFromCart(User user, Product product) {
-        cartItemRepository.deleteByUserAndProduct(user, product);
+        stockReservations.release(user.getId(), product.getId());
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.remove(user.getId(), product.getId());
+            return;
+        }
+        cartItemRepository.deleteByUserIdAndProductId(user.getId(), product.getId());
+        evictSummary(user.getId());
+    }
+
+    /**
+     * Take an order's units out of the cart once its stock was decremented. Only the ordered quantities
+     * go, so units added while an asynchronous checkout was queued stay in the cart and stay reserved
+     * @param quantities ordered units per product id
+     */
+    public void removeOrderedItems(Long userId, Map<Long, Integer> quantities) {
+        stockReservations.consume(userId, quantities);
+        if (writeBehindCartStore != null) {
+            quantities.forEach((productId, quantity) -> writeBehindCartStore.subtract(userId, productId, quantity));
+            return;
+        }
+        cartItemRepository.decrementQuantities(userId, quantities);
+        evictSummary(userId);
     }
 
     public void clearCart(User user) {
-        cartItemRepository.deleteByUser(user);
+        stockReservations.releaseAll(user.getId());
+        if (writeBehindCartStore != null) {
+            writeBehindCartStore.clear(user.getId());
+        }
+        cartItemRepository.deleteByUserId(user.getId());
+        evictSummary(user.getId());
+    }
+
+    /**
+     * Line count, unit count and total of a user's cart, from the cache or one aggregate query
+     */
+    public CartSummary getCartSummary(Long userId) {
+        if (writeBehindCartStore != null) {
+            return writeBehindCartStore.summary(userId);
+        }
+        Cache summaries = cacheManager.getCache(CacheConfig.CART_SUMMARIES);
+        if (summaries == null) {
+            return cartItemRepository.summarizeByUserId(userId);
+        }
+        return summaries.get(userId, () -> cartItemRepository.summarizeByUserId(userId));
     }
 
     public BigDecimal getCartTotal(User user) {
-        List<CartItem> cartItems = getCartItems(user);
-        return cartItems.stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return getCartSummary(user.getId()).getTotal();
     }
 
     public int getCartItemCount(User user) {
-        List<CartItem> cartItems = getCartItems(user);
-        return cartItems.stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        return (int) getCartSummary(user.getId()).getQuantity();
     }
 
     public boolean validateCartItems(User user) {
-        List<CartItem> cartItems = getCartItems(user);
+        return validateCartItems(getCartItems(user));
+    }
+
+    // Works on already loaded lines, so checkout can validate the same snapshot it orders from.
+    // Stock held for other users' carts does not count, even where this cart's own hold has expired
+    public boolean validateCartItems(List<CartItem> cartItems) {
         for (CartItem cartItem : cartItems) {
             Product product = cartItem.getProduct();
-            if (!product.isActive() || !productService.isInStock(product, cartItem.getQuantity())) {
+            if (!product.isActive() || stockReservations.available(cartItem.getUser().getId(), product.getId(),
+                    productService.getAvailableStock(product)) < cartItem.getQuantity()) {
                 return false;
             }
         }
         return true;
     }
-}
\ No newline at end of file
+
+    // Applied after commit by the transaction-aware cache manager, so the next read sees the new rows
+    private void evictSummary(Long userId) {
+        Cache summaries = cacheManager.getCache(CacheConfig.CART_SUMMARIES);
+        if (summaries != null) {
+            summaries.evict(userId);
+        }
+    }
+}
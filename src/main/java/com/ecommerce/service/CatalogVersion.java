@@ -0,0 +1,47 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Moves forward on every committed product or category change, including stock movements,
+// so anything rendered from the catalog can be validated against a single number
+@Component
+public class CatalogVersion {
+
+    // Seeded from the clock so validators handed out by a previous run never match after a restart
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    private volatile long lastModified = System.currentTimeMillis();
+
+    public long get() {
+        return version.get();
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    // Runs after the other commit listeners, so the indexes and snapshots are current before the version moves
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        bump();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        bump();
+    }
+
+    private void bump() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+}
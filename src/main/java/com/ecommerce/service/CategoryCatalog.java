@@ -0,0 +1,74 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CategorySummary;
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.model.Category;
+import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class CategoryCatalog {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private volatile CategorySnapshot snapshot;
+
+    private long version = 0;
+
+    public CategorySnapshot getSnapshot() {
+        CategorySnapshot current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        refresh();
+    }
+
+    // Product counts per category move with every product add, move, deactivation or delete
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.isListingChange()) {
+            return;
+        }
+        refresh();
+    }
+
+    // Builds the next snapshot off to the side and publishes it with a single reference swap
+    public synchronized CategorySnapshot refresh() {
+        Map<Long, Long> productCounts = new HashMap<>();
+        for (Object[] row : productRepository.countActiveByCategory()) {
+            productCounts.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        List<CategorySummary> categories = new ArrayList<>();
+        for (Category category : categoryRepository.findByActiveTrue()) {
+            categories.add(new CategorySummary(category.getId(), category.getName(), category.getDescription(),
+                    category.getImageUrl(), productCounts.getOrDefault(category.getId(), 0L)));
+        }
+
+        CategorySnapshot next = new CategorySnapshot(++version, categories);
+        snapshot = next;
+        return next;
+    }
+}
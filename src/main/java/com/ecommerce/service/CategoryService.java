@@ -1,8 +1,10 @@
 package com.ecommerce.service;
 
+import com.ecommerce.event.CategoryChangedEvent;
 import com.ecommerce.model.Category;
 import com.ecommerce.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,6 +18,9 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public List<Category> findAllActive() {
         return categoryRepository.findByActiveTrue();
     }
@@ -29,11 +34,14 @@ public class CategoryService {
     }
 
     public Category save(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId(), false));
+        return saved;
     }
 
     public void deleteById(Long id) {
         categoryRepository.deleteById(id);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id, true));
     }
 
     public List<Category> findAll() {
@@ -45,6 +53,8 @@ public class CategoryService {
     }
 
     public Category updateCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId(), false));
+        return saved;
     }
 }
\ No newline at end of file
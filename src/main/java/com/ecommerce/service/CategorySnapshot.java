@@ -0,0 +1,35 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CategorySummary;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Immutable view of the active categories; replaced as a whole whenever a category or product changes
+public final class CategorySnapshot {
+
+    private final long version;
+    private final List<CategorySummary> categories;
+    private final Map<Long, CategorySummary> categoriesById;
+
+    public CategorySnapshot(long version, List<CategorySummary> categories) {
+        this.version = version;
+        this.categories = List.copyOf(categories);
+        Map<Long, CategorySummary> byId = new LinkedHashMap<>();
+        for (CategorySummary category : categories) {
+            byId.put(category.getId(), category);
+        }
+        this.categoriesById = Collections.unmodifiableMap(byId);
+    }
+
+    public long getVersion() { return version; }
+
+    public List<CategorySummary> getCategories() { return categories; }
+
+    public Optional<CategorySummary> findById(Long id) {
+        return Optional.ofNullable(categoriesById.get(id));
+    }
+}
@@ -0,0 +1,95 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Checkout that absorbs client retries. A request carrying an idempotency key that already produced an
+// order gets that order back from idempotency_keys; one arriving while the first is still running waits
+// for it instead of starting a second transaction. Not transactional itself: waiters are only released
+// once the first checkout has committed.
+@Service
+public class CheckoutService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final long WAIT_SECONDS = 30;
+
+    @Autowired
+    private OrderService orderService;
+
+    // user id:key -> the checkout currently running for it on this node
+    private final Map<String, CompletableFuture<Order>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Place an order at most once per idempotency key
+     * @param idempotencyKey client-chosen key, the same for every retry of one checkout; null or blank
+     *                       places the order without any deduplication
+     * @return the order placed by the first request with this key
+     */
+    public Order checkout(User user, String shippingAddress, String paymentMethod, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return orderService.createOrder(user, shippingAddress, paymentMethod);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Idempotency key is too long");
+        }
+
+        Optional<Order> stored = orderService.findByIdempotencyKey(user.getId(), idempotencyKey);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        String flightKey = user.getId() + ":" + idempotencyKey;
+        CompletableFuture<Order> flight = new CompletableFuture<>();
+        CompletableFuture<Order> running = inFlight.putIfAbsent(flightKey, flight);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Order order = placeOnce(user, shippingAddress, paymentMethod, idempotencyKey);
+            flight.complete(order);
+            return order;
+        } catch (RuntimeException e) {
+            // Waiters share the failure; nothing was stored, so a later retry runs the checkout again
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private Order placeOnce(User user, String shippingAddress, String paymentMethod, String idempotencyKey) {
+        try {
+            return orderService.createOrder(user, shippingAddress, paymentMethod, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // Another node committed the same key first; its order is the answer
+            return orderService.findByIdempotencyKey(user.getId(), idempotencyKey).orElseThrow(() -> e);
+        }
+    }
+
+    private static Order await(CompletableFuture<Order> running) {
+        try {
+            return running.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Checkout is still in progress, please try again");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Checkout was interrupted");
+        }
+    }
+}
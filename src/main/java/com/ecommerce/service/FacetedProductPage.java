@@ -0,0 +1,27 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductSummary;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetedProductPage {
+
+    private final Page<ProductSummary> products;
+    private final Map<Long, Integer> categoryCounts;
+    private final List<ProductFacetIndex.PriceBucketCount> priceBucketCounts;
+
+    public FacetedProductPage(Page<ProductSummary> products, Map<Long, Integer> categoryCounts,
+                              List<ProductFacetIndex.PriceBucketCount> priceBucketCounts) {
+        this.products = products;
+        this.categoryCounts = categoryCounts;
+        this.priceBucketCounts = priceBucketCounts;
+    }
+
+    public Page<ProductSummary> getProducts() { return products; }
+
+    public Map<Long, Integer> getCategoryCounts() { return categoryCounts; }
+
+    public List<ProductFacetIndex.PriceBucketCount> getPriceBucketCounts() { return priceBucketCounts; }
+}
@@ -0,0 +1,108 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+public class HomePageModel {
+
+    private static final Logger log = LoggerFactory.getLogger(HomePageModel.class);
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryCatalog categoryCatalog;
+
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+
+    // A burst of admin edits or a checkout touching many products collapses into one rebuild
+    @Value("${app.home.refresh-debounce:500ms}")
+    private Duration refreshDebounce;
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "home-page-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    private volatile HomePageSnapshot snapshot;
+
+    private long version = 0;
+
+    public HomePageSnapshot getSnapshot() {
+        HomePageSnapshot current = snapshot;
+        if (current == null) {
+            return refresh();
+        }
+        // Best sellers also move when sales age out of the window, which no event announces
+        if (current.getBestSellersVersion() != bestSellerLeaderboard.getVersion()) {
+            scheduleRefresh();
+        }
+        return current;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        scheduleRefresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        scheduleRefresh();
+    }
+
+    public synchronized HomePageSnapshot refresh() {
+        long bestSellersVersion = bestSellerLeaderboard.getVersion();
+        HomePageSnapshot next = new HomePageSnapshot(++version, productService.findLatestProducts(),
+                categoryCatalog.getSnapshot().getCategories(),
+                bestSellerLeaderboard.topSellers(BestSellerLeaderboard.Window.WEEK, null, 4), bestSellersVersion);
+        snapshot = next;
+        return next;
+    }
+
+    // Trailing-edge debounce: the first change schedules a rebuild, later ones ride along with it.
+    // The flag is cleared before rebuilding, so a change landing mid-rebuild schedules one more.
+    private void scheduleRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.schedule(() -> {
+            refreshPending.set(false);
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                // Keep serving the previous snapshot; the next change will try again
+                log.warn("Failed to refresh home page snapshot", e);
+            }
+        }, refreshDebounce.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
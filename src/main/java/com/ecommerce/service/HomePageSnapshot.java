@@ -0,0 +1,40 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CategorySummary;
+import com.ecommerce.dto.ProductSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Everything the home page renders, assembled off the request path and swapped in as a whole
+public final class HomePageSnapshot {
+
+    private final long version;
+    private final List<ProductSummary> featuredProducts;
+    private final List<CategorySummary> categories;
+    private final List<ProductSummary> bestSellers;
+    private final long bestSellersVersion;
+    private final LocalDateTime builtAt;
+
+    public HomePageSnapshot(long version, List<ProductSummary> featuredProducts, List<CategorySummary> categories,
+                            List<ProductSummary> bestSellers, long bestSellersVersion) {
+        this.version = version;
+        this.featuredProducts = List.copyOf(featuredProducts);
+        this.categories = List.copyOf(categories);
+        this.bestSellers = List.copyOf(bestSellers);
+        this.bestSellersVersion = bestSellersVersion;
+        this.builtAt = LocalDateTime.now();
+    }
+
+    public long getVersion() { return version; }
+
+    public List<ProductSummary> getFeaturedProducts() { return featuredProducts; }
+
+    public List<CategorySummary> getCategories() { return categories; }
+
+    public List<ProductSummary> getBestSellers() { return bestSellers; }
+
+    public long getBestSellersVersion() { return bestSellersVersion; }
+
+    public LocalDateTime getBuiltAt() { return builtAt; }
+}
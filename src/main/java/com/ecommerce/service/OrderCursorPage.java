@@ -0,0 +1,24 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Order;
+
+import java.util.List;
+
+public class OrderCursorPage {
+
+    private final List<Order> content; // newest first, items and their products loaded
+    private final String nextCursor; // null on the last page
+
+    public OrderCursorPage(List<Order> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Order> getContent() { return content; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasContent() { return !content.isEmpty(); }
+
+    public boolean hasNext() { return nextCursor != null; }
+}
@@ -1,16 +1,33 @@
 package com.ecommerce.service;
 
+import com.ecommerce.event.OrderCancelledEvent;
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.event.OutboxMessageSavedEvent;
 import com.ecommerce.model.*;
+import com.ecommerce.repository.IdempotencyKeyRepository;
 import com.ecommerce.repository.OrderRepository;
 import com.ecommerce.repository.OrderItemRepository;
+import com.ecommerce.repository.OutboxMessageRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.util.CursorUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -26,39 +43,149 @@ public class OrderService {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StockReservationService stockReservations;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // How long a checkout retry with the same key still returns the original order
+    @Value("${app.checkout.idempotency-key-ttl:24h}")
+    private Duration idempotencyKeyTtl;
+
+    // Checkout commits only the order and an outbox message; OutboxWorker does the rest
+    @Value("${app.orders.async-checkout:false}")
+    private boolean asyncCheckout;
+
     public Order createOrder(User user, String shippingAddress, String paymentMethod) {
+        if (asyncCheckout) {
+            // The cart keeps its lines until the worker takes the ordered units out, so a second checkout
+            // would order them again. The user's row lock makes a concurrent one wait and then see this one
+            userRepository.findForUpdateById(user.getId());
+            if (outboxRepository.existsPendingCheckout(user.getId())) {
+                throw new RuntimeException("Your previous order is still being processed");
+            }
+        }
+
+        // One fetch-join query; validation, the total and the order items all use this snapshot
         List<CartItem> cartItems = cartService.getCartItems(user);
         
         if (cartItems.isEmpty()) {
             throw new RuntimeException("Cart is empty");
         }
 
-        if (!cartService.validateCartItems(user)) {
+        if (!cartService.validateCartItems(cartItems)) {
             throw new RuntimeException("Some items in cart are out of stock");
         }
 
-        BigDecimal totalAmount = cartService.getCartTotal(user);
+        BigDecimal totalAmount = cartItems.stream()
+                .map(CartItem::getTotalPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
         Order order = new Order(user, totalAmount, shippingAddress);
         order.setPaymentMethod(paymentMethod);
-        order = orderRepository.save(order);
 
-        // Create order items and update stock
+        // Create order items; saving the order inserts them with it
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (CartItem cartItem : cartItems) {
             OrderItem orderItem = new OrderItem(order, cartItem.getProduct(), cartItem.getQuantity(), cartItem.getPrice());
             order.getOrderItems().add(orderItem);
-            
-            // Update product stock
-            productService.updateStock(cartItem.getProduct(), cartItem.getQuantity());
+            quantities.merge(cartItem.getProduct().getId(), cartItem.getQuantity(), Integer::sum);
+        }
+
+        if (asyncCheckout) {
+            // Stock, cart and order listeners are left to the outbox worker; the cart's reservations
+            // hold the stock until then
+            order = orderRepository.save(order);
+            OutboxMessage message = outboxRepository.save(new OutboxMessage(OutboxMessage.Type.ORDER_PLACED, order.getId()));
+            eventPublisher.publishEvent(new OutboxMessageSavedEvent(message.getId()));
+            return order;
         }
 
+        // Conditional decrements in one batch; a product sold out meanwhile fails the whole order
+        productService.decrementStock(quantities);
+
         order = orderRepository.save(order);
         
-        // Clear cart after successful order
+        // Clear cart after successful order; its stock reservations are released once the decrement commits
         cartService.clearCart(user);
-        
+
+        eventPublisher.publishEvent(new OrderPlacedEvent(order.getId(), quantities, order.getOrderDate()));
+        return order;
+    }
+
+    /**
+     * Place an order and record it under the client's idempotency key in the same transaction;
+     * CheckoutService makes sure retries with the key get this order back
+     * @throws org.springframework.dao.DataIntegrityViolationException if another checkout stored the key first
+     */
+    public Order createOrder(User user, String shippingAddress, String paymentMethod, String idempotencyKey) {
+        LocalDateTime now = LocalDateTime.now();
+        idempotencyKeyRepository.deleteExpired(user.getId(), idempotencyKey, now);
+        Order order = createOrder(user, shippingAddress, paymentMethod);
+        idempotencyKeyRepository.save(new IdempotencyKey(user.getId(), idempotencyKey, order.getId(), now.plus(idempotencyKeyTtl)));
         return order;
     }
 
+    public Optional<Order> findByIdempotencyKey(Long userId, String idempotencyKey) {
+        return idempotencyKeyRepository.findOrder(userId, idempotencyKey, LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelay = 600000)
+    public void deleteExpiredIdempotencyKeys() {
+        idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    /**
+     * Second half of an asynchronous checkout, run by the outbox worker: takes the stock, confirms the
+     * order and removes the ordered lines from the cart. Safe to run again for the same order
+     * @param orderId a PENDING order placed with app.orders.async-checkout enabled
+     */
+    public void finalizeOrder(Long orderId) {
+        Order order = orderRepository.findForUpdateById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+        // Cancelled before the worker got to it, or already finalized by an earlier delivery
+        if (order.getStatus() != Order.OrderStatus.PENDING) {
+            return;
+        }
+        // Items and products in one query, instead of one per line below
+        orderRepository.findWithItemsByIdIn(List.of(orderId));
+
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            quantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
+        }
+        // A failed decrement rolls everything back, so shortages are looked for first; one that
+        // appears in between fails this delivery, and the retry cancels the order here
+        for (OrderItem orderItem : order.getOrderItems()) {
+            Product product = orderItem.getProduct();
+            if (!product.isActive() || productService.getAvailableStock(product) < quantities.get(product.getId())) {
+                order.setStatus(Order.OrderStatus.CANCELLED);
+                orderRepository.save(order);
+                // The holds would otherwise keep the units from everyone until they expire; the cart
+                // lines stay, and the next checkout validates them against what is really left
+                stockReservations.consume(order.getUser().getId(), quantities);
+                eventPublisher.publishEvent(new OrderCancelledEvent(order.getId(), Map.of(), order.getOrderDate()));
+                return;
+            }
+        }
+        productService.decrementStock(quantities);
+
+        order.setStatus(Order.OrderStatus.CONFIRMED);
+        orderRepository.save(order);
+        cartService.removeOrderedItems(order.getUser().getId(), quantities);
+
+        eventPublisher.publishEvent(new OrderPlacedEvent(order.getId(), quantities, order.getOrderDate()));
+    }
+
     public Optional<Order> findById(Long id) {
         return orderRepository.findById(id);
     }
@@ -67,8 +194,46 @@ public class OrderService {
         return orderRepository.findByUser(user, pageable);
     }
 
+    // The whole history; prefer scrollByUser, which stays as fast for long-time customers
     public List<Order> findByUser(User user) {
-        return orderRepository.findByUserOrderByOrderDateDesc(user);
+        List<Order> orders = orderRepository.findByUserOrderByOrderDateDesc(user);
+        loadItems(orders);
+        return orders;
+    }
+
+    /**
+     * One page of a user's order history, newest first, in two queries: the orders, then their items
+     * and products. Seeks past the (order date, id) of the previous page's last order
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param size number of orders per page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public OrderCursorPage scrollByUser(Long userId, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        List<Order> orders;
+        if (cursor == null || cursor.isBlank()) {
+            orders = orderRepository.findFirstByUserId(userId, Limit.of(size + 1));
+        } else {
+            Map<String, ?> keys = ((KeysetScrollPosition) CursorUtil.decode(cursor)).getKeys();
+            if (!(keys.get("orderDate") instanceof LocalDateTime orderDate) || !(keys.get("id") instanceof Long id)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            orders = orderRepository.findByUserIdBefore(userId, orderDate, id, Limit.of(size + 1));
+        }
+
+        String nextCursor = null;
+        if (orders.size() > size) {
+            orders = orders.subList(0, size);
+            Order last = orders.get(size - 1);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put("orderDate", last.getOrderDate());
+            keys.put("id", last.getId());
+            nextCursor = CursorUtil.encode(ScrollPosition.forward(keys));
+        }
+        loadItems(orders);
+        return new OrderCursorPage(orders, nextCursor);
     }
 
     public Page<Order> findAll(Pageable pageable) {
@@ -90,18 +255,28 @@ public class OrderService {
     }
 
     public void cancelOrder(Long orderId) {
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
+        // Locked, so an outbox worker cannot finalize the order while it is being cancelled
+        Optional<Order> orderOpt = orderRepository.findForUpdateById(orderId);
         if (orderOpt.isPresent()) {
             Order order = orderOpt.get();
             if (order.getStatus() == Order.OrderStatus.PENDING || order.getStatus() == Order.OrderStatus.CONFIRMED) {
                 order.setStatus(Order.OrderStatus.CANCELLED);
-                
+                orderRepository.save(order);
+
+                // An asynchronous checkout not finalized yet has taken no stock; the worker will skip it
+                if (outboxRepository.existsByTypeAndAggregateIdAndProcessedAtIsNull(OutboxMessage.Type.ORDER_PLACED, orderId)) {
+                    eventPublisher.publishEvent(new OrderCancelledEvent(order.getId(), Map.of(), order.getOrderDate()));
+                    return;
+                }
+
                 // Restore stock for cancelled items
+                Map<Long, Integer> quantities = new LinkedHashMap<>();
                 for (OrderItem orderItem : order.getOrderItems()) {
-                    productService.restoreStock(orderItem.getProduct(), orderItem.getQuantity());
+                    quantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
                 }
+                productService.restoreStock(quantities);
                 
-                orderRepository.save(order);
+                eventPublisher.publishEvent(new OrderCancelledEvent(order.getId(), quantities, order.getOrderDate()));
             } else {
                 throw new RuntimeException("Order cannot be cancelled");
             }
@@ -110,6 +285,13 @@ public class OrderService {
         }
     }
 
+    // The orders are already in the persistence context, so this initializes their item collections in place
+    private void loadItems(List<Order> orders) {
+        if (!orders.isEmpty()) {
+            orderRepository.findWithItemsByIdIn(orders.stream().map(Order::getId).toList());
+        }
+    }
+
     public Order save(Order order) {
         return orderRepository.save(order);
     }
@@ -0,0 +1,179 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.OutboxMessageSavedEvent;
+import com.ecommerce.model.OutboxMessage;
+import com.ecommerce.repository.OutboxMessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Drains outbox_messages on virtual threads, at most app.outbox.workers at a time. A message is started
+// right after the transaction that saved it commits, and the poller picks up whatever that missed:
+// retries, messages left over by a restart, and leases that ran out because a worker died. Each
+// message is handled and marked processed in one transaction, so it is done at least once.
+@Component
+public class OutboxWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxWorker.class);
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.outbox.workers:16}")
+    private int workers;
+
+    // Attempts after which a failing message is left alone, marked failed with its last error
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    // How long a claimed message is kept from other workers before it counts as abandoned
+    @Value("${app.outbox.lease:30s}")
+    private Duration lease;
+
+    private ExecutorService executor;
+
+    private Semaphore permits;
+
+    // Messages submitted and not finished yet, so the poller does not queue them twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("outbox-", 0).factory());
+        permits = new Semaphore(workers);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Outbox messages still running at shutdown; their leases will expire and they will run again");
+        }
+    }
+
+    @TransactionalEventListener
+    public void onMessageSaved(OutboxMessageSavedEvent event) {
+        submit(event.getMessageId());
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            for (Long messageId : outboxRepository.findDueIds(LocalDateTime.now(), Limit.of(workers * 4))) {
+                if (!submit(messageId)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not poll the outbox", e);
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    // Never blocks the caller, which may be a request thread; false when every worker is busy
+    private boolean submit(Long messageId) {
+        if (!inFlight.add(messageId)) {
+            return true;
+        }
+        if (!permits.tryAcquire()) {
+            inFlight.remove(messageId);
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(messageId);
+                } finally {
+                    inFlight.remove(messageId);
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the message stays due for the next start
+            inFlight.remove(messageId);
+            permits.release();
+            return false;
+        }
+    }
+
+    private void process(Long messageId) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transaction.execute(status -> outboxRepository.claim(messageId, now, now.plus(lease)));
+        if (claimed == null || claimed == 0) {
+            return;
+        }
+        try {
+            transaction.executeWithoutResult(status -> {
+                OutboxMessage message = outboxRepository.findById(messageId)
+                        .orElseThrow(() -> new RuntimeException("Outbox message not found"));
+                handle(message);
+                message.setProcessedAt(LocalDateTime.now());
+                outboxRepository.save(message);
+            });
+        } catch (RuntimeException e) {
+            retryLater(transaction, messageId, e);
+        }
+    }
+
+    private void handle(OutboxMessage message) {
+        switch (message.getType()) {
+            case ORDER_PLACED -> orderService.finalizeOrder(message.getAggregateId());
+        }
+    }
+
+    // Exponential backoff from 1s, capped at MAX_BACKOFF, until maxAttempts is reached
+    private void retryLater(TransactionTemplate transaction, Long messageId, RuntimeException failure) {
+        try {
+            transaction.executeWithoutResult(status -> outboxRepository.findById(messageId).ifPresent(message -> {
+                int attempts = message.getAttempts() + 1;
+                message.setAttempts(attempts);
+                String error = String.valueOf(failure.getMessage());
+                message.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+                if (attempts >= maxAttempts) {
+                    log.error("Outbox message {} failed {} times, giving up", messageId, attempts, failure);
+                    message.setFailedAt(LocalDateTime.now());
+                } else {
+                    log.warn("Outbox message {} failed, will retry", messageId, failure);
+                    Duration backoff = Duration.ofSeconds(1L << Math.min(attempts - 1, 16));
+                    message.setAvailableAt(LocalDateTime.now().plus(backoff.compareTo(MAX_BACKOFF) < 0 ? backoff : MAX_BACKOFF));
+                }
+                outboxRepository.save(message);
+            }));
+        } catch (RuntimeException e) {
+            // The lease still runs out, after which the message is retried anyway
+            log.warn("Could not reschedule outbox message {}", messageId, e);
+        }
+    }
+}
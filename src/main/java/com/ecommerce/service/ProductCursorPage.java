@@ -0,0 +1,24 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductSummary;
+
+import java.util.List;
+
+public class ProductCursorPage {
+
+    private final List<ProductSummary> content;
+    private final String nextCursor; // null on the last page
+
+    public ProductCursorPage(List<ProductSummary> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ProductSummary> getContent() { return content; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasContent() { return !content.isEmpty(); }
+
+    public boolean hasNext() { return nextCursor != null; }
+}
@@ -0,0 +1,351 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+public class ProductFacetIndex {
+
+    // Upper bounds (exclusive, in rupees) of the price buckets shown in the sidebar; the last bucket is open-ended
+    private static final long[] PRICE_BUCKET_BOUNDS = {1000, 2500, 5000, 10000, 25000, 50000};
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Products are addressed by a dense ordinal so facet membership fits in a BitSet
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final List<FacetDocument> documents = new ArrayList<>();
+
+    private final BitSet live = new BitSet();
+    private final Map<Long, BitSet> categoryBits = new HashMap<>();
+    private final BitSet[] priceBucketBits = new BitSet[PRICE_BUCKET_BOUNDS.length + 1];
+
+    // Ordinals pre-sorted per sort key, recomputed lazily after a write
+    private final Map<String, int[]> sortedOrdinals = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    public ProductFacetIndex() {
+        for (int i = 0; i < priceBucketBits.length; i++) {
+            priceBucketBits[i] = new BitSet();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Product> products = productRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            documents.clear();
+            live.clear();
+            categoryBits.clear();
+            for (BitSet bucket : priceBucketBits) {
+                bucket.clear();
+            }
+            sortedOrdinals.clear();
+            for (Product product : products) {
+                if (product.isActive()) {
+                    addDocument(product);
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.isListingChange()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(event.getProductId());
+            Product product = event.getProduct();
+            if (event.getType() != ProductChangedEvent.ChangeType.DELETED && product.isActive()) {
+                addDocument(product);
+            }
+            sortedOrdinals.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Intersect the category, price and text facets and count every facet value against the other selections
+     * @param categoryId selected category, or null for all
+     * @param minPrice inclusive lower price bound, or null
+     * @param maxPrice inclusive upper price bound, or null
+     * @param search free text matched through the search index, or null
+     * @param sort requested order; unsorted text queries are returned by relevance
+     * @return matching product ids in display order, plus facet counts
+     */
+    public FacetQueryResult query(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, String search, Sort sort) {
+        boolean hasText = search != null && !search.isBlank();
+        List<Long> relevance = hasText ? searchIndex.search(search) : Collections.emptyList();
+
+        lock.readLock().lock();
+        try {
+            BitSet textBits = live;
+            if (hasText) {
+                textBits = new BitSet();
+                for (Long id : relevance) {
+                    Integer ordinal = ordinals.get(id);
+                    if (ordinal != null) {
+                        textBits.set(ordinal);
+                    }
+                }
+                textBits.and(live);
+            }
+
+            BitSet categoryFilter = live;
+            if (categoryId != null) {
+                categoryFilter = categoryBits.getOrDefault(categoryId, new BitSet());
+            }
+            BitSet priceFilter = priceRange(toMinor(minPrice), toMinor(maxPrice));
+
+            // Each facet is counted with every selection applied except its own
+            BitSet withoutCategory = (BitSet) textBits.clone();
+            withoutCategory.and(priceFilter);
+            BitSet withoutPrice = (BitSet) textBits.clone();
+            withoutPrice.and(categoryFilter);
+
+            Map<Long, Integer> categoryCounts = new HashMap<>();
+            for (Map.Entry<Long, BitSet> entry : categoryBits.entrySet()) {
+                int count = intersectionCount(entry.getValue(), withoutCategory);
+                if (count > 0) {
+                    categoryCounts.put(entry.getKey(), count);
+                }
+            }
+
+            List<PriceBucketCount> priceBucketCounts = new ArrayList<>(priceBucketBits.length);
+            for (int i = 0; i < priceBucketBits.length; i++) {
+                BigDecimal lower = i == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(PRICE_BUCKET_BOUNDS[i - 1]);
+                BigDecimal upper = i < PRICE_BUCKET_BOUNDS.length ? BigDecimal.valueOf(PRICE_BUCKET_BOUNDS[i]) : null;
+                priceBucketCounts.add(new PriceBucketCount(lower, upper, intersectionCount(priceBucketBits[i], withoutPrice)));
+            }
+
+            BitSet matches = withoutPrice;
+            matches.and(priceFilter);
+
+            List<Long> ids = new ArrayList<>(matches.cardinality());
+            if (hasText && sort.isUnsorted()) {
+                for (Long id : relevance) {
+                    Integer ordinal = ordinals.get(id);
+                    if (ordinal != null && matches.get(ordinal)) {
+                        ids.add(id);
+                    }
+                }
+            } else {
+                for (int ordinal : sortedOrdinals(sort)) {
+                    if (matches.get(ordinal)) {
+                        ids.add(documents.get(ordinal).id);
+                    }
+                }
+            }
+            return new FacetQueryResult(ids, categoryCounts, priceBucketCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Whole buckets inside the range are OR-ed in; the two edge buckets are checked product by product
+    private BitSet priceRange(Long min, Long max) {
+        if (min == null && max == null) {
+            return live;
+        }
+        long lower = min != null ? min : Long.MIN_VALUE;
+        long upper = max != null ? max : Long.MAX_VALUE;
+        BitSet result = new BitSet();
+        for (int i = 0; i < priceBucketBits.length; i++) {
+            long bucketLower = i == 0 ? 0 : PRICE_BUCKET_BOUNDS[i - 1] * 100;
+            long bucketUpper = i < PRICE_BUCKET_BOUNDS.length ? PRICE_BUCKET_BOUNDS[i] * 100 - 1 : Long.MAX_VALUE;
+            if (bucketUpper < lower || bucketLower > upper) {
+                continue;
+            }
+            if (bucketLower >= lower && bucketUpper <= upper) {
+                result.or(priceBucketBits[i]);
+            } else {
+                BitSet bucket = priceBucketBits[i];
+                for (int ordinal = bucket.nextSetBit(0); ordinal >= 0; ordinal = bucket.nextSetBit(ordinal + 1)) {
+                    long price = documents.get(ordinal).priceMinor;
+                    if (price >= lower && price <= upper) {
+                        result.set(ordinal);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private int[] sortedOrdinals(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc("id"));
+        String key = order.getProperty() + ":" + order.getDirection();
+        int[] cached = sortedOrdinals.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Comparator<FacetDocument> comparator = switch (order.getProperty()) {
+            case "name" -> Comparator.comparing(d -> d.name, String.CASE_INSENSITIVE_ORDER);
+            case "price" -> Comparator.comparingLong(d -> d.priceMinor);
+            case "createdAt" -> Comparator.comparing(d -> d.createdAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+            default -> Comparator.comparingLong(d -> d.id);
+        };
+        if (order.isDescending()) {
+            comparator = comparator.reversed();
+        }
+        comparator = comparator.thenComparingLong(d -> d.id);
+
+        List<FacetDocument> sorted = new ArrayList<>(documents);
+        sorted.sort(comparator);
+        int[] result = new int[sorted.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ordinals.get(sorted.get(i).id);
+        }
+        // Readers share the read lock, so two of them may compute the same order; either result is valid
+        sortedOrdinals.put(key, result);
+        return result;
+    }
+
+    private void addDocument(Product product) {
+        Integer ordinal = ordinals.get(product.getId());
+        FacetDocument document = new FacetDocument(product);
+        if (ordinal == null) {
+            ordinal = documents.size();
+            ordinals.put(product.getId(), ordinal);
+            documents.add(document);
+        } else {
+            documents.set(ordinal, document);
+        }
+        live.set(ordinal);
+        if (document.categoryId != null) {
+            categoryBits.computeIfAbsent(document.categoryId, k -> new BitSet()).set(ordinal);
+        }
+        priceBucketBits[bucketOf(document.priceMinor)].set(ordinal);
+    }
+
+    // Ordinals are kept for removed products and reused if they come back; a rebuild compacts them
+    private void removeDocument(Long productId) {
+        Integer ordinal = ordinals.get(productId);
+        if (ordinal == null || !live.get(ordinal)) {
+            return;
+        }
+        FacetDocument document = documents.get(ordinal);
+        live.clear(ordinal);
+        if (document.categoryId != null) {
+            BitSet bits = categoryBits.get(document.categoryId);
+            if (bits != null) {
+                bits.clear(ordinal);
+            }
+        }
+        priceBucketBits[bucketOf(document.priceMinor)].clear(ordinal);
+    }
+
+    private static int bucketOf(long priceMinor) {
+        for (int i = 0; i < PRICE_BUCKET_BOUNDS.length; i++) {
+            if (priceMinor < PRICE_BUCKET_BOUNDS[i] * 100) {
+                return i;
+            }
+        }
+        return PRICE_BUCKET_BOUNDS.length;
+    }
+
+    private static int intersectionCount(BitSet a, BitSet b) {
+        BitSet copy = (BitSet) a.clone();
+        copy.and(b);
+        return copy.cardinality();
+    }
+
+    private static Long toMinor(BigDecimal amount) {
+        return amount == null ? null : amount.movePointRight(2).longValue();
+    }
+
+    private static class FacetDocument {
+        private final long id;
+        private final String name;
+        private final long priceMinor;
+        private final LocalDateTime createdAt;
+        private final Long categoryId;
+
+        FacetDocument(Product product) {
+            this.id = product.getId();
+            this.name = product.getName() != null ? product.getName() : "";
+            this.priceMinor = product.getPrice() != null ? product.getPrice().movePointRight(2).longValue() : 0;
+            this.createdAt = product.getCreatedAt();
+            this.categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        }
+    }
+
+    public static class FacetQueryResult {
+        private final List<Long> productIds;
+        private final Map<Long, Integer> categoryCounts;
+        private final List<PriceBucketCount> priceBucketCounts;
+
+        public FacetQueryResult(List<Long> productIds, Map<Long, Integer> categoryCounts, List<PriceBucketCount> priceBucketCounts) {
+            this.productIds = productIds;
+            this.categoryCounts = categoryCounts;
+            this.priceBucketCounts = priceBucketCounts;
+        }
+
+        public List<Long> getProductIds() { return productIds; }
+
+        public Map<Long, Integer> getCategoryCounts() { return categoryCounts; }
+
+        public List<PriceBucketCount> getPriceBucketCounts() { return priceBucketCounts; }
+    }
+
+    public static class PriceBucketCount {
+        private final BigDecimal min;
+        private final BigDecimal max; // null for the open-ended top bucket
+        private final int count;
+
+        public PriceBucketCount(BigDecimal min, BigDecimal max, int count) {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+
+        public BigDecimal getMin() { return min; }
+
+        public BigDecimal getMax() { return max; }
+
+        // Bucket bounds are exclusive at the top, filter parameters are inclusive
+        public BigDecimal getMaxInclusive() {
+            return max != null ? max.subtract(new BigDecimal("0.01")) : null;
+        }
+
+        public int getCount() { return count; }
+    }
+}
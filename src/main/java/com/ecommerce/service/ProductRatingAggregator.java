@@ -0,0 +1,123 @@
+package com.ecommerce.service;
+
+import com.ecommerce.config.CacheConfig;
+import com.ecommerce.dto.RatingAggregate;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.event.ReviewChangedEvent;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ReviewRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps the rating columns on products in step with the reviews table. Committed review changes
+// are folded into one pending delta per product, and each flush applies a single relative UPDATE
+// per touched product, however many reviews arrived in between.
+@Component
+public class ProductRatingAggregator {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, RatingAggregate> pending = new ConcurrentHashMap<>();
+
+    @TransactionalEventListener
+    public void onReviewChanged(ReviewChangedEvent event) {
+        pending.compute(event.getProductId(), (productId, delta) -> {
+            RatingAggregate next = delta != null ? delta : RatingAggregate.empty(productId);
+            if (event.getOldRating() != null) {
+                next = next.plus(event.getOldRating(), -1);
+            }
+            if (event.getNewRating() != null) {
+                next = next.plus(event.getNewRating(), 1);
+            }
+            return next;
+        });
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    // A delta taken off the map is lost if this transaction rolls back; rebuild() reconciles that
+    @Scheduled(fixedDelayString = "${app.reviews.aggregate-flush-delay-ms:1000}")
+    @Transactional
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        for (Long productId : pending.keySet()) {
+            RatingAggregate delta = pending.remove(productId);
+            if (delta == null || delta.isZero()) {
+                continue;
+            }
+            productRepository.applyRatingDelta(delta, now);
+            changed(productId);
+            updated++;
+        }
+        return updated;
+    }
+
+    /**
+     * Recount every product's aggregates from the reviews table and correct the ones that drifted
+     * @return number of products whose stored aggregates were wrong
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.reviews.aggregate-rebuild-cron:0 30 3 * * *}")
+    @Transactional
+    public synchronized int rebuild() {
+        // Apply what is already queued first, so the comparison below starts from the latest totals.
+        // A review committing while the recount runs can still be counted twice; the next rebuild fixes it.
+        flush();
+
+        Map<Long, RatingAggregate> recounted = new HashMap<>();
+        for (RatingAggregate totals : reviewRepository.aggregateRatingsByProduct()) {
+            recounted.put(totals.getProductId(), totals);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int corrected = 0;
+        for (RatingAggregate stored : productRepository.findRatingAggregates()) {
+            RatingAggregate expected = recounted.getOrDefault(stored.getProductId(),
+                    RatingAggregate.empty(stored.getProductId()));
+            if (!expected.equals(stored)) {
+                productRepository.setRatingAggregate(expected, now);
+                changed(stored.getProductId());
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    private void changed(Long productId) {
+        // Both take effect when the surrounding transaction commits
+        Cache products = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (products != null) {
+            products.evict(productId);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.ChangeType.RATING));
+    }
+}
@@ -0,0 +1,165 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.repository.OrderItemRepository;
+import com.ecommerce.util.LongIntHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// "Frequently bought together": a sparse product x product matrix counting the orders that contained
+// both products. Built from order history at startup, then bumped by every placed order; reads never
+// touch the database, products are rendered from the in-memory summary store.
+@Component
+public class ProductRecommender {
+
+    // An order with more distinct products only pairs up its first ones, bounding the quadratic update
+    private static final int MAX_BASKET = 50;
+
+    // Related products precomputed per product, before dropping ones that have since gone inactive
+    private static final int MAX_RELATED = 20;
+
+    @Autowired
+    private ProductSummaryStore productSummaryStore;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, Row> rows = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, Row> nextRows = new HashMap<>();
+        Long currentOrder = null;
+        Set<Long> basket = new LinkedHashSet<>();
+        for (Object[] pair : orderItemRepository.findOrderProductPairs()) {
+            Long orderId = (Long) pair[0];
+            if (!orderId.equals(currentOrder)) {
+                addBasket(nextRows, basket);
+                basket.clear();
+                currentOrder = orderId;
+            }
+            basket.add((Long) pair[1]);
+        }
+        addBasket(nextRows, basket);
+
+        lock.writeLock().lock();
+        try {
+            rows = nextRows;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        lock.writeLock().lock();
+        try {
+            addBasket(rows, event.getQuantities().keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Products most often ordered together with the given one
+     * @param productId the product being viewed
+     * @param limit maximum number of recommendations
+     * @return active products, most frequent first
+     */
+    public List<ProductSummary> relatedTo(Long productId, int limit) {
+        lock.readLock().lock();
+        try {
+            Row row = rows.get(productId);
+            if (row == null) {
+                return Collections.emptyList();
+            }
+            return resolve(row.top(), Set.of(productId), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Products most often ordered together with anything in a basket, excluding the basket itself
+     * @param productIds products already in the basket
+     * @param limit maximum number of recommendations
+     * @return active products, highest combined count first
+     */
+    public List<ProductSummary> forBasket(Collection<Long> productIds, int limit) {
+        lock.readLock().lock();
+        try {
+            LongIntHashMap combined = new LongIntHashMap();
+            for (Long productId : productIds) {
+                Row row = rows.get(productId);
+                if (row != null) {
+                    row.counts.forEach(combined::addTo);
+                }
+            }
+            return resolve(combined.topKeys(combined.size()), new HashSet<>(productIds), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<ProductSummary> resolve(long[] candidates, Set<Long> exclude, int limit) {
+        List<ProductSummary> result = new ArrayList<>(Math.min(limit, candidates.length));
+        for (int i = 0; i < candidates.length && result.size() < limit; i++) {
+            ProductSummary product = productSummaryStore.get(candidates[i]);
+            if (product != null && !exclude.contains(product.getId())) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    private static void addBasket(Map<Long, Row> rows, Collection<Long> productIds) {
+        if (productIds.size() < 2) {
+            return;
+        }
+        List<Long> basket = new ArrayList<>(productIds);
+        if (basket.size() > MAX_BASKET) {
+            basket = basket.subList(0, MAX_BASKET);
+        }
+        for (Long a : basket) {
+            Row row = rows.computeIfAbsent(a, id -> new Row());
+            for (Long b : basket) {
+                if (!a.equals(b)) {
+                    row.counts.addTo(b, 1);
+                }
+            }
+            row.top = null;
+        }
+    }
+
+    private static class Row {
+        private final LongIntHashMap counts = new LongIntHashMap();
+        private volatile long[] top; // cleared on every update, recomputed by the next read
+
+        long[] top() {
+            long[] current = top;
+            if (current == null) {
+                current = counts.topKeys(MAX_RELATED);
+                top = current;
+            }
+            return current;
+        }
+    }
+}
@@ -1,17 +1,41 @@
 package com.ecommerce.service;
 
+import com.ecommerce.config.CacheConfig;
+import com.ecommerce.dto.ProductDetail;
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.event.ProductChangedEvent;
 import com.ecommerce.model.Product;
 import com.ecommerce.model.Category;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.util.CursorUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -20,61 +44,260 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
-    public Page<Product> findAllActive(Pageable pageable) {
-        return productRepository.findByActiveTrue(pageable);
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductFacetIndex facetIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ShardedStockService shardedStock;
+
+    public Page<ProductSummary> findAllActive(Pageable pageable) {
+        return productRepository.findActiveSummaries(pageable);
+    }
+
+    public Slice<ProductSummary> findAllActiveSlice(Pageable pageable) {
+        return productRepository.findActiveSummarySlice(pageable);
+    }
+
+    public Slice<ProductSummary> findByCategorySlice(Long categoryId, Pageable pageable) {
+        return productRepository.findActiveSummarySliceByCategory(categoryId, pageable);
     }
 
-    public Page<Product> findByCategory(Category category, Pageable pageable) {
-        return productRepository.findByActiveTrueAndCategory(category, pageable);
+    public ProductCursorPage scrollActive(String cursor, int size) {
+        return scrollByName(null, cursor, size);
     }
 
-    public Page<Product> searchByName(String name, Pageable pageable) {
-        return productRepository.findByActiveTrueAndNameContainingIgnoreCase(name, pageable);
+    public ProductCursorPage scrollByCategory(Long categoryId, String cursor, int size) {
+        return scrollByName(categoryId, cursor, size);
+    }
+
+    public Page<ProductSummary> searchByName(String name, Pageable pageable) {
+        if (!searchIndex.isReady()) {
+            return productRepository.findActiveSummariesByName(name, pageable);
+        }
+
+        // Results come back in relevance order, so only the requested page is loaded from the database
+        return loadPage(searchIndex.search(name), pageable);
     }
 
-    public Page<Product> findByFilters(Category category, BigDecimal minPrice, BigDecimal maxPrice, String name, Pageable pageable) {
+    public Page<ProductSummary> findByFilters(Category category, BigDecimal minPrice, BigDecimal maxPrice, String name, Pageable pageable) {
         return productRepository.findByFilters(category, minPrice, maxPrice, name, pageable);
     }
 
-    public List<Product> findLatestProducts() {
-        return productRepository.findTop8ByActiveTrueOrderByCreatedAtDesc();
+    public boolean isFacetIndexReady() {
+        return facetIndex.isReady();
+    }
+
+    public FacetedProductPage findByFacets(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, String search, Pageable pageable) {
+        ProductFacetIndex.FacetQueryResult result = facetIndex.query(categoryId, minPrice, maxPrice, search, pageable.getSort());
+        return new FacetedProductPage(loadPage(result.getProductIds(), pageable),
+                result.getCategoryCounts(), result.getPriceBucketCounts());
+    }
+
+    public List<ProductSummary> findLatestProducts() {
+        return productRepository.findLatestActiveSummaries(Limit.of(8));
     }
 
     public List<Product> findInStockProducts() {
         return productRepository.findByActiveTrueAndStockQuantityGreaterThan(0);
     }
 
+    // The managed entity, for code that changes the product; reads go through findDetailById
     public Optional<Product> findById(Long id) {
-        return productRepository.findById(id);
+        return productRepository.findWithCategoryById(id);
     }
 
+    /**
+     * Read-through cached copy of a product for the detail page, add-to-cart and stock checks. Entries are
+     * evicted when the product or its stock changes, once that commits
+     */
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS, key = "#id", unless = "#result == null")
+    public Optional<ProductDetail> findDetailById(Long id) {
+        return productRepository.findDetailById(id);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS, key = "#result.id")
     public Product save(Product product) {
-        return productRepository.save(product);
+        Integer storedStock = shardedStockOf(product);
+        Product saved = productRepository.save(product);
+        applyShardedStockEdit(saved, storedStock);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved, ProductChangedEvent.ChangeType.SAVED));
+        return saved;
     }
 
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS, key = "#id")
     public void deleteById(Long id) {
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProductChangedEvent(id));
     }
 
     public List<Product> findAll() {
         return productRepository.findAll();
     }
 
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS, key = "#result.id")
     public Product updateProduct(Product product) {
-        return productRepository.save(product);
+        Integer storedStock = shardedStockOf(product);
+        Product saved = productRepository.save(product);
+        applyShardedStockEdit(saved, storedStock);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved, ProductChangedEvent.ChangeType.SAVED));
+        return saved;
+    }
+
+    /**
+     * Take units of one product off its stock, sharded or not; a negative quantity gives units back
+     * @throws RuntimeException if the product does not have that many units
+     */
+    public void updateStock(Product product, int quantity) {
+        if (quantity > 0) {
+            decrementStock(Map.of(product.getId(), quantity));
+        } else if (quantity < 0) {
+            restoreStock(Map.of(product.getId(), -quantity));
+        }
     }
 
     public boolean isInStock(Product product, int quantity) {
-        return product.getStockQuantity() >= quantity;
+        return getAvailableStock(product) >= quantity;
     }
 
-    public void updateStock(Product product, int quantity) {
-        product.setStockQuantity(product.getStockQuantity() - quantity);
-        productRepository.save(product);
+    // Sharded products count their shards, the products row only shows a periodically refreshed copy
+    public int getAvailableStock(Product product) {
+        return getAvailableStock(product.getId(), product.getStockQuantity());
+    }
+
+    // For callers that only loaded the products row's stock column, e.g. in a projection
+    public int getAvailableStock(Long productId, int stockQuantity) {
+        if (shardedStock.isSharded(productId)) {
+            return (int) shardedStock.available(productId);
+        }
+        return stockQuantity;
+    }
+
+    /**
+     * Take stock for all lines of an order in one batch of conditional decrements; sharded products
+     * take theirs from one of their shards
+     * @param quantities units per product id
+     * @throws RuntimeException if any product is short; the caller's transaction then undoes every decrement
+     */
+    public void decrementStock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> regular = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            if (!shardedStock.isSharded(entry.getKey())) {
+                regular.put(entry.getKey(), entry.getValue());
+            } else if (!shardedStock.take(entry.getKey(), entry.getValue())) {
+                throw new RuntimeException("Not enough stock available for product " + entry.getKey());
+            }
+        }
+        if (regular.isEmpty()) {
+            return;
+        }
+        List<Long> shortOfStock = productRepository.decrementStock(regular, LocalDateTime.now());
+        if (!shortOfStock.isEmpty()) {
+            throw new RuntimeException("Not enough stock available for product " + shortOfStock.get(0));
+        }
+        stockChanged(regular.keySet());
+    }
+
+    public void restoreStock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> regular = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (shardedStock.isSharded(entry.getKey())) {
+                shardedStock.give(entry.getKey(), entry.getValue());
+            } else {
+                regular.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (regular.isEmpty()) {
+            return;
+        }
+        productRepository.incrementStock(regular, LocalDateTime.now());
+        stockChanged(regular.keySet());
     }
 
-    public void restoreStock(Product product, int quantity) {
-        product.setStockQuantity(product.getStockQuantity() + quantity);
-        productRepository.save(product);
+    // Stock column of a sharded product as stored before a save, null for other products
+    private Integer shardedStockOf(Product product) {
+        if (product.getId() == null || !shardedStock.isSharded(product.getId())) {
+            return null;
+        }
+        return productRepository.findStockQuantityById(product.getId()).orElse(null);
+    }
+
+    // A sharded product's stock column is only a refreshed copy of its shards, and a form-bound entity
+    // carries that copy back. Only a stock the admin actually changed moves the shards, and only by
+    // the difference, so units sold since the copy was taken are not put on sale again
+    private void applyShardedStockEdit(Product saved, Integer storedStock) {
+        if (storedStock == null) {
+            return;
+        }
+        int delta = saved.getStockQuantity() - storedStock;
+        saved.setStockQuantity(delta != 0 ? shardedStock.adjustStock(saved.getId(), delta) : storedStock);
+    }
+
+    // The cached copies still hold the old stock; evictions and events apply after commit
+    private void stockChanged(Collection<Long> productIds) {
+        Cache products = cacheManager.getCache(CacheConfig.PRODUCTS);
+        for (Long productId : productIds) {
+            if (products != null) {
+                products.evict(productId);
+            }
+            eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.ChangeType.STOCK));
+        }
+    }
+
+    // Load one page of an already ordered id list, keeping that order
+    private Page<ProductSummary> loadPage(List<Long> orderedIds, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), orderedIds.size());
+        int to = Math.min(from + pageable.getPageSize(), orderedIds.size());
+        List<Long> pageIds = orderedIds.subList(from, to);
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, orderedIds.size());
+        }
+
+        Map<Long, ProductSummary> productsById = productRepository.findSummariesByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(ProductSummary::getId, Function.identity()));
+        List<ProductSummary> content = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            ProductSummary product = productsById.get(id);
+            if (product != null) {
+                content.add(product);
+            }
+        }
+        return new PageImpl<>(content, pageable, orderedIds.size());
+    }
+
+    // Seeks past the (name, id) of the previous page's last row; one extra row tells whether there is a next page
+    private ProductCursorPage scrollByName(Long categoryId, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        List<ProductSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = productRepository.findFirstActiveSummariesByName(categoryId, Limit.of(size + 1));
+        } else {
+            Map<String, ?> keys = ((KeysetScrollPosition) CursorUtil.decode(cursor)).getKeys();
+            if (!(keys.get("name") instanceof String name) || !(keys.get("id") instanceof Long id)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            rows = productRepository.findActiveSummariesByNameAfter(categoryId, name, id, Limit.of(size + 1));
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            ProductSummary last = rows.get(size - 1);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put("name", last.getName());
+            keys.put("id", last.getId());
+            nextCursor = CursorUtil.encode(ScrollPosition.forward(keys));
+        }
+        return new ProductCursorPage(rows, nextCursor);
     }
-}
\ No newline at end of file
+}
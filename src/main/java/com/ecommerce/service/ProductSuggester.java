@@ -0,0 +1,163 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.Suggestion;
+import com.ecommerce.event.CategoryChangedEvent;
+import com.ecommerce.event.OrderCancelledEvent;
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.model.Category;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.repository.OrderItemRepository;
+import com.ecommerce.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Component
+public class ProductSuggester {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    // Source entries keyed by id; only touched while holding this object's lock
+    private final Map<Long, Suggestion> productEntries = new HashMap<>();
+    private final Map<Long, Suggestion> categoryEntries = new HashMap<>();
+
+    // Bumped by every change to the entries; the trie being served was built at installedVersion
+    private long version;
+    private long installedVersion;
+
+    private volatile SuggestionTrie trie = SuggestionTrie.empty();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, Long> unitsSold = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantityByProduct()) {
+            unitsSold.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        Map<Long, Long> productsPerCategory = new HashMap<>();
+        List<Product> products = productRepository.findAll();
+        synchronized (this) {
+            productEntries.clear();
+            for (Product product : products) {
+                if (product.isActive()) {
+                    // Popularity is units sold, so new products still rank by name among themselves
+                    long popularity = unitsSold.getOrDefault(product.getId(), 0L);
+                    productEntries.put(product.getId(), new Suggestion(product.getName(), Suggestion.Type.PRODUCT, product.getId(), popularity));
+                    if (product.getCategory() != null) {
+                        productsPerCategory.merge(product.getCategory().getId(), 1L, Long::sum);
+                    }
+                }
+            }
+
+            categoryEntries.clear();
+            for (Category category : categoryRepository.findByActiveTrue()) {
+                long popularity = productsPerCategory.getOrDefault(category.getId(), 0L);
+                categoryEntries.put(category.getId(), new Suggestion(category.getName(), Suggestion.Type.CATEGORY, category.getId(), popularity));
+            }
+            version++;
+        }
+        repack();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (!event.isListingChange()) {
+            return;
+        }
+        Suggestion current = productEntries.get(event.getProductId());
+        Product product = event.getProduct();
+        if (event.getType() == ProductChangedEvent.ChangeType.DELETED || !product.isActive()) {
+            if (productEntries.remove(event.getProductId()) != null) {
+                version++;
+            }
+            return;
+        }
+        // Only a new or renamed product changes the trie
+        if (current != null && Objects.equals(current.getText(), product.getName())) {
+            return;
+        }
+        long popularity = current != null ? current.getPopularity() : 0L;
+        productEntries.put(product.getId(), new Suggestion(product.getName(), Suggestion.Type.PRODUCT, product.getId(), popularity));
+        version++;
+    }
+
+    // Popularity follows units sold, like the best-seller leaderboard
+    @TransactionalEventListener
+    public synchronized void onOrderPlaced(OrderPlacedEvent event) {
+        addUnitsSold(event.getQuantities(), 1);
+    }
+
+    @TransactionalEventListener
+    public synchronized void onOrderCancelled(OrderCancelledEvent event) {
+        addUnitsSold(event.getQuantities(), -1);
+    }
+
+    // Category edits are rare, so they simply rebuild everything
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+
+    public List<Suggestion> suggest(String query, int limit) {
+        return trie.complete(query, Math.max(0, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    /**
+     * Rebuild the packed trie if the entries changed since it was built, and swap it in. Runs on the
+     * scheduler, so events only update the entries and a burst of them costs one rebuild
+     */
+    @Scheduled(fixedDelayString = "${app.suggest.repack-interval-ms:1000}")
+    public void repack() {
+        List<Suggestion> entries;
+        long building;
+        synchronized (this) {
+            if (version == installedVersion) {
+                return;
+            }
+            building = version;
+            entries = new ArrayList<>(productEntries.size() + categoryEntries.size());
+            entries.addAll(categoryEntries.values());
+            entries.addAll(productEntries.values());
+        }
+        SuggestionTrie next = SuggestionTrie.build(entries, MAX_SUGGESTIONS);
+        synchronized (this) {
+            // A rebuild() running at the same time may already have installed newer entries
+            if (building > installedVersion) {
+                trie = next;
+                installedVersion = building;
+            }
+        }
+    }
+
+    // The caller holds this object's lock
+    private void addUnitsSold(Map<Long, Integer> quantities, int sign) {
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Suggestion current = productEntries.get(line.getKey());
+            if (current != null) {
+                long popularity = Math.max(current.getPopularity() + (long) sign * line.getValue(), 0L);
+                productEntries.put(line.getKey(), new Suggestion(current.getText(), current.getType(), current.getId(), popularity));
+                version++;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductSummary;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Summaries of every active product, for in-memory features (recommendations, best sellers)
+// that have to render products without going back to the database
+@Component
+public class ProductSummaryStore {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private volatile Map<Long, ProductSummary> products = new ConcurrentHashMap<>();
+
+    // Products whose stock or rating moved since the last refresh
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, ProductSummary> next = new ConcurrentHashMap<>();
+        for (ProductSummary product : productRepository.findAllActiveSummaries()) {
+            next.put(product.getId(), product);
+        }
+        products = next;
+    }
+
+    // Stock and rating changes carry no entity. Their products are only marked here, so a checkout does
+    // not pay a query per line on its own thread; refreshStale reloads them together
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        if (event.getType() == ProductChangedEvent.ChangeType.DELETED || (product != null && !product.isActive())) {
+            products.remove(event.getProductId());
+        } else if (product != null) {
+            // The saved entity has no category name loaded and may be form-bound, with rating columns that
+            // were never written; the committed row is read back instead. Saves are rare admin edits
+            for (ProductSummary summary : productRepository.findSummariesByIdIn(List.of(product.getId()))) {
+                products.put(summary.getId(), summary);
+            }
+        } else if (products.containsKey(event.getProductId())) {
+            stale.add(event.getProductId());
+        }
+    }
+
+    /**
+     * Reload the summaries of products whose stock or rating moved, in one query
+     * @return number of summaries refreshed
+     */
+    @Scheduled(fixedDelayString = "${app.products.summary-refresh-ms:1000}")
+    public int refreshStale() {
+        if (stale.isEmpty()) {
+            return 0;
+        }
+        // Taken off before the query, so a change committed while it runs marks its product again
+        List<Long> productIds = new ArrayList<>(stale);
+        stale.removeAll(productIds);
+        int refreshed = 0;
+        for (ProductSummary summary : productRepository.findSummariesByIdIn(productIds)) {
+            // A product deleted or deactivated in the meantime stays out
+            if (products.computeIfPresent(summary.getId(), (id, previous) -> summary) != null) {
+                refreshed++;
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * Look up an active product
+     * @param productId the product id
+     * @return its summary, or null if the product is unknown or inactive
+     */
+    public ProductSummary get(Long productId) {
+        return products.get(productId);
+    }
+
+    public int size() {
+        return products.size();
+    }
+}
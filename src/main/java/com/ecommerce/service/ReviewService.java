@@ -0,0 +1,55 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.ReviewChangedEvent;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.Review;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.ReviewRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@Transactional
+public class ReviewService {
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    public Page<Review> findByProduct(Product product, Pageable pageable) {
+        return reviewRepository.findByProduct(product, pageable);
+    }
+
+    public Review addReview(User user, Product product, Integer rating, String comment) {
+        if (reviewRepository.existsByUserAndProduct(user, product)) {
+            throw new RuntimeException("You have already reviewed this product");
+        }
+        Review saved = reviewRepository.save(new Review(user, product, rating, comment));
+        eventPublisher.publishEvent(new ReviewChangedEvent(product.getId(), null, saved.getRating()));
+        return saved;
+    }
+
+    public Review updateReview(Long reviewId, Integer rating, String comment) {
+        Review review = reviewRepository.findById(reviewId)
+                .orElseThrow(() -> new RuntimeException("Review not found"));
+        Integer oldRating = review.getRating();
+        review.setRating(rating);
+        review.setComment(comment);
+        Review saved = reviewRepository.save(review);
+        eventPublisher.publishEvent(new ReviewChangedEvent(review.getProduct().getId(), oldRating, saved.getRating()));
+        return saved;
+    }
+
+    public void deleteReview(Long reviewId) {
+        Review review = reviewRepository.findById(reviewId)
+                .orElseThrow(() -> new RuntimeException("Review not found"));
+        reviewRepository.delete(review);
+        eventPublisher.publishEvent(new ReviewChangedEvent(review.getProduct().getId(), review.getRating(), null));
+    }
+}
@@ -0,0 +1,299 @@
+package com.ecommerce.service;
+
+import com.ecommerce.config.CacheConfig;
+import com.ecommerce.event.ProductChangedEvent;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.ProductStockShard;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ProductStockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Opt-in stock sharding for flash-sale products. The stock of a sharded product lives in N rows of
+// product_stock_shards, mirrored by N in-memory counters. A checkout claims units from a random counter
+// (or its siblings) without any lock, then updates only the shard rows it claimed from, so concurrent
+// checkouts of one product mostly lock different rows. The products row keeps a displayed stock that
+// is refreshed from the shard totals every few seconds.
+@Service
+@Transactional
+public class ShardedStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedStockService.class);
+
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Products to shard at startup, e.g. 12:8,15:16 (product id:shard count)
+    @Value("${app.stock.sharded-products:}")
+    private List<String> configuredProducts;
+
+    // product id -> committed units per shard, minus units claimed by checkouts still in flight
+    private final Map<Long, AtomicIntegerArray> counters = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Map<Long, List<Integer>> loaded = new HashMap<>();
+        for (ProductStockShard shard : shardRepository.findAllOrdered()) {
+            loaded.computeIfAbsent(shard.getProduct().getId(), id -> new ArrayList<>()).add(shard.getQuantity());
+        }
+        loaded.forEach((productId, quantities) ->
+                counters.put(productId, new AtomicIntegerArray(quantities.stream().mapToInt(Integer::intValue).toArray())));
+
+        for (String entry : configuredProducts) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            Long productId = Long.valueOf(parts[0]);
+            if (!counters.containsKey(productId)) {
+                enableSharding(productId, parts.length > 1 ? Integer.parseInt(parts[1]) : 8);
+            }
+        }
+    }
+
+    public boolean isSharded(Long productId) {
+        return counters.containsKey(productId);
+    }
+
+    /**
+     * Split a product's current stock over a number of shard rows
+     * @param productId the product to shard
+     * @param shards number of shard rows, at least 2
+     */
+    public void enableSharding(Long productId, int shards) {
+        if (shards < 2) {
+            throw new RuntimeException("A sharded product needs at least 2 shards");
+        }
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        shardRepository.deleteByProductId(productId);
+        split(product, product.getStockQuantity(), shards);
+    }
+
+    // Folds the shards back into the products row
+    public void disableSharding(Long productId) {
+        if (!isSharded(productId)) {
+            return;
+        }
+        int total = shardRepository.findForUpdate(productId).stream().mapToInt(ProductStockShard::getQuantity).sum();
+        shardRepository.deleteByProductId(productId);
+        publishDisplayedStock(productId, total);
+        afterCompletion(committed -> {
+            if (committed) {
+                counters.remove(productId);
+            }
+        });
+    }
+
+    /**
+     * Change a sharded product's stock by a number of units, e.g. for an admin stock edit. The shards are
+     * adjusted in place, so checkouts claiming from them meanwhile keep their claims
+     * @param delta units to add, or to take away when negative; never takes more than is left
+     * @return the product's new stock across its shards
+     */
+    public int adjustStock(Long productId, int delta) {
+        // Locked first, so the total cannot move while the change is applied
+        int total = shardRepository.findForUpdate(productId).stream().mapToInt(ProductStockShard::getQuantity).sum();
+        if (delta > 0) {
+            give(productId, delta);
+            return total + delta;
+        }
+        int units = (int) Math.min(-delta, available(productId));
+        while (units > 0 && !take(productId, units)) {
+            units = (int) Math.min(units, available(productId));
+        }
+        return total - units;
+    }
+
+    public long available(Long productId) {
+        AtomicIntegerArray shards = counters.get(productId);
+        long total = 0;
+        for (int i = 0; shards != null && i < shards.length(); i++) {
+            total += shards.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Take units from one shard, starting at a random one and moving on to its siblings; only when no
+     * single shard can cover the quantity is it gathered from several
+     * @return false if the product does not have enough stock across all its shards
+     */
+    public boolean take(Long productId, int quantity) {
+        AtomicIntegerArray shards = counters.get(productId);
+        int[] claimed = new int[shards.length()];
+        int start = ThreadLocalRandom.current().nextInt(shards.length());
+        boolean covered = false;
+        for (int i = 0; i < shards.length() && !covered; i++) {
+            int shard = (start + i) % shards.length();
+            if (claim(shards, shard, quantity, true) == quantity) {
+                claimed[shard] = quantity;
+                covered = true;
+            }
+        }
+        int remaining = covered ? 0 : quantity;
+        for (int shard = 0; shard < shards.length() && remaining > 0; shard++) {
+            int units = claim(shards, shard, remaining, false);
+            claimed[shard] += units;
+            remaining -= units;
+        }
+        if (remaining > 0) {
+            release(shards, claimed);
+            return false;
+        }
+
+        // Claimed units come back if the order does not commit
+        afterCompletion(committed -> {
+            if (!committed) {
+                release(shards, claimed);
+            }
+        });
+        // Rows in shard order, so checkouts gathering from several shards cannot deadlock
+        for (int shard = 0; shard < claimed.length; shard++) {
+            if (claimed[shard] > 0 && shardRepository.take(productId, shard, claimed[shard]) == 0) {
+                throw new RuntimeException("Stock shards of product " + productId + " are out of sync");
+            }
+        }
+        return true;
+    }
+
+    public void give(Long productId, int quantity) {
+        AtomicIntegerArray shards = counters.get(productId);
+        int shard = ThreadLocalRandom.current().nextInt(shards.length());
+        shardRepository.give(productId, shard, quantity);
+        // Only a committed restore can be sold again
+        afterCompletion(committed -> {
+            if (committed) {
+                shards.addAndGet(shard, quantity);
+            }
+        });
+    }
+
+    // Listings, caches and cart checks read products.stock_quantity; keep it near the shard total
+    // Each product is refreshed in its own transaction, so a failed update only skips that product
+    // until the next round instead of rolling back the others
+    @Scheduled(fixedDelayString = "${app.stock.shards.sync-interval-ms:2000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void syncDisplayedStock() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<Object[]> totals;
+        try {
+            totals = transaction.execute(status -> shardRepository.sumQuantityByProduct());
+        } catch (RuntimeException e) {
+            log.warn("Could not read shard totals of sharded products", e);
+            return;
+        }
+        for (Object[] row : totals) {
+            Long productId = (Long) row[0];
+            int stock = ((Number) row[1]).intValue();
+            try {
+                transaction.executeWithoutResult(status -> publishDisplayedStock(productId, stock));
+            } catch (RuntimeException e) {
+                log.warn("Could not refresh displayed stock of sharded product {}", productId, e);
+            }
+        }
+    }
+
+    // Takes up to the requested units from one counter; with exact set, takes all of them or nothing
+    private static int claim(AtomicIntegerArray shards, int shard, int quantity, boolean exact) {
+        while (true) {
+            int current = shards.get(shard);
+            int units = Math.min(current, quantity);
+            if (units <= 0 || (exact && units < quantity)) {
+                return 0;
+            }
+            if (shards.compareAndSet(shard, current, current - units)) {
+                return units;
+            }
+        }
+    }
+
+    private static void release(AtomicIntegerArray shards, int[] claimed) {
+        for (int shard = 0; shard < claimed.length; shard++) {
+            if (claimed[shard] > 0) {
+                shards.addAndGet(shard, claimed[shard]);
+            }
+        }
+    }
+
+    private static void afterCompletion(java.util.function.Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private void publishDisplayedStock(Long productId, int stock) {
+        if (productRepository.setDisplayedStock(productId, stock, LocalDateTime.now()) == 0) {
+            return;
+        }
+        Cache products = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (products != null) {
+            products.evict(productId);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.ChangeType.STOCK));
+    }
+
+    private void split(Product product, int stock, int shards) {
+        List<ProductStockShard> rows = new ArrayList<>(shards);
+        int[] quantities = new int[shards];
+        for (int i = 0; i < shards; i++) {
+            quantities[i] = stock / shards + (i < stock % shards ? 1 : 0);
+            rows.add(new ProductStockShard(product, i, quantities[i]));
+        }
+        shardRepository.saveAll(rows);
+        // Until then checkouts keep using the previous counters, or the products row, which a rollback keeps
+        afterCompletion(committed -> {
+            if (committed) {
+                counters.put(product.getId(), new AtomicIntegerArray(quantities));
+            }
+        });
+    }
+}
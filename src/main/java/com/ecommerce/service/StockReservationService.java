@@ -0,0 +1,387 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductDetail;
+import com.ecommerce.model.StockReservation;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.StockReservationRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.util.TimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+// Inventory held for carts. Adding to the cart reserves units for a limited time; other users can only
+// reserve or buy what is left over (available-to-promise), and checkout turns the holds into the real
+// stock decrement. Holds live in memory, per product under one of a set of striped locks, and are
+// mirrored in stock_reservations. A timer wheel hands expired holds back.
+//
+// Holds only grow before their transaction commits and only shrink after it, so a concurrent reader
+// may see too little stock for a moment but never promises the same unit twice.
+@Service
+@Transactional
+public class StockReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationService.class);
+
+    private static final int STRIPES = 64;
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 1024;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.stock.reservations.ttl:15m}")
+    private Duration ttl;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    // product id -> its holds; only touched under the product's stripe lock
+    private final Map<Long, ProductHolds> holds = new ConcurrentHashMap<>();
+
+    private final TimerWheel<HoldKey> expiries = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, System.currentTimeMillis());
+
+    public StockReservationService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        LocalDateTime now = LocalDateTime.now();
+        reservationRepository.deleteExpired(now);
+        for (Object[] row : reservationRepository.findActive(now)) {
+            Long userId = (Long) row[0];
+            Long productId = (Long) row[1];
+            long expiresAt = ((LocalDateTime) row[3]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            ReentrantLock lock = stripe(productId);
+            lock.lock();
+            try {
+                change(productId, userId, (Integer) row[2], expiresAt);
+                expiries.schedule(new HoldKey(userId, productId), expiresAt);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Units of a product a user can still put in the cart or buy: stock not held by anyone else
+     * @param userId the user asking, whose own hold counts as available to them; null for anonymous
+     */
+    public int available(Long userId, Long productId) {
+        return available(userId, productId, stockOf(productId));
+    }
+
+    /**
+     * Same as {@link #available(Long, Long)} for a caller that has already loaded the product
+     * @param stock the product's available stock, 0 if it is inactive
+     */
+    public int available(Long userId, Long productId, int stock) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductHolds productHolds = holds.get(productId);
+            if (productHolds == null) {
+                return stock;
+            }
+            Hold own = userId != null ? productHolds.byUser.get(userId) : null;
+            return Math.max(stock - productHolds.reserved + (own != null ? own.quantity : 0), 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the units held for a user to a cart line's new quantity; 0 or less releases the hold
+     * @return false if the product is not available in that quantity
+     */
+    public boolean hold(Long userId, Long productId, int quantity) {
+        return hold(userId, productId, quantity, quantity > 0 ? stockOf(productId) : 0);
+    }
+
+    /**
+     * Same as {@link #hold(Long, Long, int)} for a caller that has already loaded the product
+     * @param stock the product's available stock, 0 if it is inactive
+     */
+    public boolean hold(Long userId, Long productId, int quantity, int stock) {
+        if (quantity <= 0) {
+            release(userId, productId);
+            return true;
+        }
+        return adjust(userId, productId, stock, own -> quantity);
+    }
+
+    public void release(Long userId, Long productId) {
+        if (reservationRepository.deleteByUserIdAndProductId(userId, productId) > 0) {
+            afterCommit(() -> remove(productId, userId));
+        }
+    }
+
+    public void release(Long userId, Collection<Long> productIds) {
+        if (reservationRepository.deleteByUserIdAndProductIdIn(userId, productIds) > 0) {
+            afterCommit(() -> {
+                for (Long productId : productIds) {
+                    remove(productId, userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Shrink a user's holds by units an order has just taken from stock; holds used up are released
+     * @param quantities ordered units per product id
+     */
+    public void consume(Long userId, Map<Long, Integer> quantities) {
+        List<Long> usedUp = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            int ordered = entry.getValue();
+            if (held(userId, entry.getKey()) <= ordered) {
+                usedUp.add(entry.getKey());
+            } else {
+                adjust(userId, entry.getKey(), 0, own -> Math.max(own - ordered, 0));
+            }
+        }
+        if (!usedUp.isEmpty()) {
+            release(userId, usedUp);
+        }
+    }
+
+    // Called with the cart: on checkout the order's decrement has taken the held units by then
+    public void releaseAll(Long userId) {
+        List<Long> productIds = reservationRepository.findProductIdsByUserId(userId);
+        if (productIds.isEmpty()) {
+            return;
+        }
+        reservationRepository.deleteByUserId(userId);
+        afterCommit(() -> {
+            for (Long productId : productIds) {
+                remove(productId, userId);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void releaseExpired() {
+        long now = System.currentTimeMillis();
+        int released = 0;
+        for (HoldKey key : expiries.advance(now)) {
+            ReentrantLock lock = stripe(key.productId());
+            lock.lock();
+            try {
+                ProductHolds productHolds = holds.get(key.productId());
+                Hold hold = productHolds != null ? productHolds.byUser.get(key.userId()) : null;
+                if (hold != null && hold.expiresAt <= now) {
+                    change(key.productId(), key.userId(), -hold.quantity, hold.expiresAt);
+                    released++;
+                } else if (hold != null) {
+                    // Renewed after this deadline was taken off the wheel; wait for the new one
+                    expiries.schedule(key, hold.expiresAt);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (released == 0) {
+            return;
+        }
+        try {
+            reservationRepository.deleteExpired(toDateTime(now));
+        } catch (RuntimeException e) {
+            // Expired rows are never loaded back; a later sweep or the next startup deletes them
+            log.warn("Could not delete expired stock reservations", e);
+        }
+    }
+
+    private boolean adjust(Long userId, Long productId, int stock, IntUnaryOperator target) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        int quantity;
+        int delta;
+        long previousExpiresAt;
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductHolds productHolds = holds.get(productId);
+            Hold own = productHolds != null ? productHolds.byUser.get(userId) : null;
+            int current = own != null ? own.quantity : 0;
+            previousExpiresAt = own != null ? own.expiresAt : expiresAt;
+            quantity = target.applyAsInt(current);
+            delta = quantity - current;
+            int reserved = productHolds != null ? productHolds.reserved : 0;
+            if (delta > 0 && reserved + delta > stock) {
+                return false;
+            }
+            if (delta > 0) {
+                change(productId, userId, delta, expiresAt);
+            } else if (own != null) {
+                own.expiresAt = expiresAt;
+            }
+            // Under the lock, so of two racing renewals the later deadline is the one left on the wheel
+            expiries.schedule(new HoldKey(userId, productId), expiresAt);
+        } finally {
+            lock.unlock();
+        }
+
+        if (reservationRepository.updateHold(userId, productId, quantity, toDateTime(expiresAt)) == 0) {
+            reservationRepository.save(new StockReservation(userRepository.getReferenceById(userId),
+                    productRepository.getReferenceById(productId), quantity, toDateTime(expiresAt)));
+        }
+        int applied = delta;
+        long restoredExpiresAt = previousExpiresAt;
+        onCompletion(committed -> {
+            if (committed && applied < 0) {
+                change(productId, userId, applied);
+            } else if (!committed) {
+                undo(productId, userId, Math.max(applied, 0), expiresAt, restoredExpiresAt);
+            }
+        });
+        return true;
+    }
+
+    // Takes back what a rolled-back adjust grew, and its renewal unless the hold was renewed again since
+    private void undo(Long productId, Long userId, int grown, long expiresAt, long previousExpiresAt) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductHolds productHolds = holds.get(productId);
+            Hold own = productHolds != null ? productHolds.byUser.get(userId) : null;
+            if (own == null) {
+                return;
+            }
+            long restored = own.expiresAt == expiresAt ? previousExpiresAt : own.expiresAt;
+            change(productId, userId, -grown, restored);
+            if (productHolds.byUser.containsKey(userId)) {
+                expiries.schedule(new HoldKey(userId, productId), restored);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Resizes an existing hold, keeping its expiry
+    private void change(Long productId, Long userId, int delta) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductHolds productHolds = holds.get(productId);
+            Hold own = productHolds != null ? productHolds.byUser.get(userId) : null;
+            if (own != null) {
+                change(productId, userId, delta == Integer.MIN_VALUE ? -own.quantity : delta, own.expiresAt);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The caller must hold the product's stripe lock
+    private void change(Long productId, Long userId, int delta, long expiresAt) {
+        ProductHolds productHolds = holds.computeIfAbsent(productId, id -> new ProductHolds());
+        Hold own = productHolds.byUser.computeIfAbsent(userId, id -> new Hold());
+        int quantity = Math.max(own.quantity + delta, 0);
+        productHolds.reserved += quantity - own.quantity;
+        own.quantity = quantity;
+        own.expiresAt = expiresAt;
+        if (quantity == 0) {
+            productHolds.byUser.remove(userId);
+            if (productHolds.byUser.isEmpty()) {
+                holds.remove(productId);
+            }
+        }
+    }
+
+    private int held(Long userId, Long productId) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductHolds productHolds = holds.get(productId);
+            Hold own = productHolds != null ? productHolds.byUser.get(userId) : null;
+            return own != null ? own.quantity : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Long productId, Long userId) {
+        change(productId, userId, Integer.MIN_VALUE);
+        expiries.cancel(new HoldKey(userId, productId));
+    }
+
+    private int stockOf(Long productId) {
+        return productService.findDetailById(productId)
+                .filter(ProductDetail::isActive)
+                .map(product -> productService.getAvailableStock(productId, product.getStockQuantity()))
+                .orElse(0);
+    }
+
+    private static void afterCommit(Runnable action) {
+        onCompletion(committed -> {
+            if (committed) {
+                action.run();
+            }
+        });
+    }
+
+    private static void onCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private ReentrantLock stripe(Long productId) {
+        return stripes[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    private record HoldKey(Long userId, Long productId) {}
+
+    private static class ProductHolds {
+        private int reserved;
+        private final Map<Long, Hold> byUser = new HashMap<>();
+    }
+
+    private static class Hold {
+        private int quantity;
+        private long expiresAt;
+    }
+}
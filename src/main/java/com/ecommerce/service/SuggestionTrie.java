@@ -0,0 +1,243 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Immutable prefix trie packed into parallel arrays. Every node stores its own top-k completions,
+// so a lookup is a walk down the query characters followed by a copy of that node's list.
+public final class SuggestionTrie {
+
+    // Longer keys add nodes without helping anyone who is still typing
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private static final Comparator<Suggestion> BY_POPULARITY = Comparator
+            .comparingLong(Suggestion::getPopularity).reversed()
+            .thenComparing(Suggestion::getText, String.CASE_INSENSITIVE_ORDER);
+
+    private static final SuggestionTrie EMPTY = build(Collections.emptyList(), 1);
+
+    private final Suggestion[] suggestions; // sorted best first, so a smaller index is a better suggestion
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[] topStart;
+    private final byte[] topCount;
+    private final int[] top;
+
+    private SuggestionTrie(Suggestion[] suggestions, char[] labels, int[] firstChild, int[] childCount,
+                           int[] topStart, byte[] topCount, int[] top) {
+        this.suggestions = suggestions;
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.topStart = topStart;
+        this.topCount = topCount;
+        this.top = top;
+    }
+
+    public static SuggestionTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build a trie where each suggestion can be found by a prefix of any word in its text
+     * @param entries the suggestions to index
+     * @param maxK how many completions to precompute per node, at most 127
+     * @return the packed trie
+     */
+    public static SuggestionTrie build(List<Suggestion> entries, int maxK) {
+        Suggestion[] sorted = entries.toArray(new Suggestion[0]);
+        Arrays.sort(sorted, BY_POPULARITY);
+
+        BuildNode root = new BuildNode('\0');
+        for (int i = 0; i < sorted.length; i++) {
+            String key = normalize(sorted[i].getText());
+            for (int start = 0; start < key.length(); start++) {
+                if (start == 0 || key.charAt(start - 1) == ' ') {
+                    root.insert(key, start, Math.min(key.length(), start + MAX_KEY_LENGTH), i);
+                }
+            }
+        }
+        root.computeTop(maxK);
+
+        // Breadth-first layout keeps the children of a node contiguous and sorted by label
+        List<BuildNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        int[] firstChild = new int[16];
+        int[] childCount = new int[16];
+        for (int i = 0; i < nodes.size(); i++) {
+            BuildNode node = nodes.get(i);
+            if (i >= firstChild.length) {
+                firstChild = Arrays.copyOf(firstChild, firstChild.length * 2);
+                childCount = Arrays.copyOf(childCount, childCount.length * 2);
+            }
+            firstChild[i] = nodes.size();
+            childCount[i] = node.children.size();
+            nodes.addAll(node.children.values());
+        }
+
+        int size = nodes.size();
+        char[] labels = new char[size];
+        int[] topStart = new int[size];
+        byte[] topCount = new byte[size];
+        int totalTop = 0;
+        for (BuildNode node : nodes) {
+            totalTop += node.top.length;
+        }
+        int[] top = new int[totalTop];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            BuildNode node = nodes.get(i);
+            labels[i] = node.label;
+            topStart[i] = offset;
+            topCount[i] = (byte) node.top.length;
+            System.arraycopy(node.top, 0, top, offset, node.top.length);
+            offset += node.top.length;
+        }
+        return new SuggestionTrie(sorted, labels, Arrays.copyOf(firstChild, size), Arrays.copyOf(childCount, size),
+                topStart, topCount, top);
+    }
+
+    /**
+     * Complete a prefix as typed by the user
+     * @param query raw query text
+     * @param k maximum number of completions, capped at the k the trie was built with
+     * @return best completions first
+     */
+    public List<Suggestion> complete(String query, int k) {
+        int node = find(query);
+        if (node < 0) {
+            return Collections.emptyList();
+        }
+        int count = Math.min(k, topCount[node]);
+        List<Suggestion> result = new ArrayList<>(count);
+        int start = topStart[node];
+        for (int i = 0; i < count; i++) {
+            result.add(suggestions[top[start + i]]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return suggestions.length;
+    }
+
+    public int nodeCount() {
+        return labels.length;
+    }
+
+    // Walks the query without building a normalized copy of it, except for non-ASCII input
+    private int find(String query) {
+        if (query == null) {
+            return -1;
+        }
+        int node = 0;
+        boolean pendingSpace = false;
+        boolean started = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= 0x80) {
+                return findNormalized(normalize(query));
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (pendingSpace) {
+                    node = child(node, ' ');
+                    if (node < 0) {
+                        return -1;
+                    }
+                    pendingSpace = false;
+                }
+                node = child(node, c);
+                if (node < 0) {
+                    return -1;
+                }
+                started = true;
+            } else if (started) {
+                pendingSpace = true;
+            }
+        }
+        return started ? node : -1;
+    }
+
+    private int findNormalized(String key) {
+        if (key.isEmpty()) {
+            return -1;
+        }
+        int node = 0;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = child(node, key.charAt(i));
+        }
+        return node;
+    }
+
+    private int child(int node, char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    static String normalize(String text) {
+        return String.join(" ", ProductSearchIndex.tokenize(text));
+    }
+
+    private static class BuildNode {
+        private final char label;
+        private final Map<Character, BuildNode> children = new TreeMap<>();
+        private final List<Integer> terminals = new ArrayList<>(1);
+        private int[] top;
+
+        BuildNode(char label) {
+            this.label = label;
+        }
+
+        void insert(String key, int from, int to, int suggestion) {
+            BuildNode node = this;
+            for (int i = from; i < to; i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), BuildNode::new);
+                // Every node on the path can complete to this suggestion
+                node.terminals.add(suggestion);
+            }
+        }
+
+        // Suggestions are pre-sorted, so a node's top-k are simply its k smallest distinct indexes
+        void computeTop(int k) {
+            int[] candidates = new int[terminals.size()];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = terminals.get(i);
+            }
+            Arrays.sort(candidates);
+            int distinct = 0;
+            for (int i = 0; i < candidates.length && distinct < k; i++) {
+                if (i == 0 || candidates[i] != candidates[i - 1]) {
+                    candidates[distinct++] = candidates[i];
+                }
+            }
+            top = Arrays.copyOf(candidates, distinct);
+            terminals.clear();
+            for (BuildNode child : children.values()) {
+                child.computeTop(k);
+            }
+        }
+    }
+}
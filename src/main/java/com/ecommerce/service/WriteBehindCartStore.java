@@ -0,0 +1,422 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CartLine;
+import com.ecommerce.dto.CartSummary;
+import com.ecommerce.dto.ProductDetail;
+import com.ecommerce.repository.CartItemRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Live carts kept in memory and written to cart_items behind the user's back. Repeated changes to a
+// line between flushes collapse into one row write, and every dirty cart is flushed in the same JDBC
+// batch. Reads that need the rows (cart page, checkout) go through flush(userId) first.
+@Component
+@ConditionalOnProperty(name = "app.cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Clean carts untouched for this long are dropped from memory and reloaded on the next visit
+    @Value("${app.cart.write-behind.idle-eviction:30m}")
+    private Duration idleEviction;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final Map<Long, ResidentCart> carts = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    public WriteBehindCartStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Add units of a product to a cart; stock is checked against the cached product and again at checkout
+     * @return false if the product is missing, inactive or cannot cover the resulting quantity
+     */
+    public boolean add(Long userId, Long productId, int quantity) {
+        Optional<ProductDetail> productOpt = productService.findDetailById(productId);
+        if (productOpt.isEmpty() || !productOpt.get().isActive()) {
+            return false;
+        }
+        ProductDetail product = productOpt.get();
+
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            ResidentCart cart = resident(userId);
+            int total = cart.quantityOf(productId) + quantity;
+            if (product.getStockQuantity() < total) {
+                return false;
+            }
+            cart.put(userId, new CartLine(productId, total, product.getPrice()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Change the quantity of a line already in the cart; 0 or less removes it
+     * @return false if the cart has no such line
+     */
+    public boolean setQuantity(Long userId, Long productId, int quantity) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            ResidentCart cart = resident(userId);
+            CartLine line = cart.lines.get(productId);
+            if (line == null || line.isRemoved()) {
+                return false;
+            }
+            cart.put(userId, new CartLine(productId, Math.max(quantity, 0), line.getPrice()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int quantityOf(Long userId, Long productId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            return resident(userId).quantityOf(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take units off a line in the cart, removing it when nothing is left
+     * @return false if the cart has no such line
+     */
+    public boolean subtract(Long userId, Long productId, int quantity) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            ResidentCart cart = resident(userId);
+            CartLine line = cart.lines.get(productId);
+            if (line == null || line.isRemoved()) {
+                return false;
+            }
+            cart.put(userId, new CartLine(productId, Math.max(line.getQuantity() - quantity, 0), line.getPrice()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean remove(Long userId, Long productId) {
+        return setQuantity(userId, productId, 0);
+    }
+
+    /**
+     * The caller deletes the rows in its transaction. The cart's flush lock is held until that transaction
+     * completes, so no flush can write the cart back meanwhile; the memory is emptied only if it commits,
+     * and after a rollback the pending lines are still there to be flushed
+     */
+    public void clear(Long userId) {
+        ResidentCart cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        cart.flushLock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                discard(userId, cart);
+            } finally {
+                cart.flushLock.unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        discard(userId, cart);
+                    }
+                } finally {
+                    cart.flushLock.unlock();
+                }
+            }
+        });
+    }
+
+    public CartSummary summary(Long userId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            ResidentCart cart = resident(userId);
+            long lineCount = 0;
+            long quantity = 0;
+            BigDecimal total = BigDecimal.ZERO;
+            for (CartLine line : cart.lines.values()) {
+                if (!line.isRemoved()) {
+                    lineCount++;
+                    quantity += line.getQuantity();
+                    total = total.add(line.getPrice().multiply(BigDecimal.valueOf(line.getQuantity())));
+                }
+            }
+            return new CartSummary(lineCount, quantity, total);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Barrier: once this returns, cart_items holds every change made to the user's cart so far
+     */
+    public void flush(Long userId) {
+        ResidentCart cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        // Also waits for a scheduled flush that has already drained this cart but not yet committed
+        cart.flushLock.lock();
+        try {
+            List<CartLine> lines = drain(userId, cart);
+            if (!lines.isEmpty()) {
+                Map<Long, List<CartLine>> batch = new HashMap<>();
+                batch.put(userId, lines);
+                write(batch);
+            }
+        } finally {
+            cart.flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:500}")
+    public void flush() {
+        flushDirty(false);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushDirty(true);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEviction.toMillis();
+        for (Map.Entry<Long, ResidentCart> entry : carts.entrySet()) {
+            ResidentCart cart = entry.getValue();
+            if (cart.lastAccess >= cutoff || !cart.flushLock.tryLock()) {
+                continue;
+            }
+            try {
+                ReentrantLock lock = stripe(entry.getKey());
+                lock.lock();
+                try {
+                    if (cart.dirty.isEmpty() && cart.lastAccess < cutoff) {
+                        carts.remove(entry.getKey(), cart);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                cart.flushLock.unlock();
+            }
+        }
+    }
+
+    public int residentCarts() {
+        return carts.size();
+    }
+
+    private void flushDirty(boolean wait) {
+        if (dirtyUsers.isEmpty()) {
+            return;
+        }
+        Map<Long, List<CartLine>> batch = new HashMap<>();
+        List<ResidentCart> locked = new ArrayList<>();
+        try {
+            for (Long userId : dirtyUsers) {
+                ResidentCart cart = carts.get(userId);
+                if (cart == null) {
+                    continue;
+                }
+                // A cart held by a checkout barrier is being written already
+                if (wait) {
+                    cart.flushLock.lock();
+                } else if (!cart.flushLock.tryLock()) {
+                    continue;
+                }
+                locked.add(cart);
+                List<CartLine> lines = drain(userId, cart);
+                if (!lines.isEmpty()) {
+                    batch.put(userId, lines);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cart write-behind flush failed, will retry", e);
+        } finally {
+            for (ResidentCart cart : locked) {
+                cart.flushLock.unlock();
+            }
+        }
+    }
+
+    // Pending writes are dropped so a flush cannot bring deleted rows back; the caller must hold the flush lock
+    private void discard(Long userId, ResidentCart cart) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            cart.dirty.clear();
+            carts.put(userId, new ResidentCart(new ArrayList<>()));
+            dirtyUsers.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Takes the cart's pending lines; the caller must hold its flush lock
+    private List<CartLine> drain(Long userId, ResidentCart cart) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            dirtyUsers.remove(userId);
+            List<CartLine> lines = new ArrayList<>(cart.dirty.size());
+            for (Long productId : cart.dirty) {
+                lines.add(cart.lines.get(productId));
+            }
+            cart.dirty.clear();
+            return lines;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Commits before returning, while the flush locks are still held, so writes for a cart never reorder
+    private void write(Map<Long, List<CartLine>> batch) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> cartItemRepository.writeLines(batch));
+        } catch (RuntimeException e) {
+            // Lines hold their latest state, so re-marking them dirty is enough to retry
+            for (Map.Entry<Long, List<CartLine>> entry : batch.entrySet()) {
+                requeue(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+        for (Map.Entry<Long, List<CartLine>> entry : batch.entrySet()) {
+            forgetRemoved(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void requeue(Long userId, List<CartLine> lines) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            ResidentCart cart = carts.get(userId);
+            if (cart != null) {
+                for (CartLine line : lines) {
+                    cart.dirty.add(line.getProductId());
+                }
+                dirtyUsers.add(userId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Deleted rows no longer need their tombstone, unless the line changed again meanwhile
+    private void forgetRemoved(Long userId, List<CartLine> lines) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            ResidentCart cart = carts.get(userId);
+            if (cart != null) {
+                for (CartLine line : lines) {
+                    if (line.isRemoved() && !cart.dirty.contains(line.getProductId())) {
+                        cart.lines.remove(line.getProductId(), line);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The caller must hold the user's stripe lock
+    private ResidentCart resident(Long userId) {
+        ResidentCart cart = carts.get(userId);
+        if (cart == null) {
+            cart = new ResidentCart(cartItemRepository.findLinesByUserId(userId));
+            carts.put(userId, cart);
+        }
+        cart.lastAccess = System.currentTimeMillis();
+        return cart;
+    }
+
+    private ReentrantLock stripe(Long userId) {
+        return stripes[Math.floorMod(userId.hashCode(), STRIPES)];
+    }
+
+    private class ResidentCart {
+        // Guarded by the owner's stripe lock; removed lines stay as tombstones until their delete is written
+        private final Map<Long, CartLine> lines = new LinkedHashMap<>();
+        private final Set<Long> dirty = new LinkedHashSet<>();
+        // Held while this cart's changes are written, so two flushes of one cart never race
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        ResidentCart(List<CartLine> loaded) {
+            for (CartLine line : loaded) {
+                lines.put(line.getProductId(), line);
+            }
+        }
+
+        int quantityOf(Long productId) {
+            CartLine line = lines.get(productId);
+            return line != null ? line.getQuantity() : 0;
+        }
+
+        void put(Long userId, CartLine line) {
+            lines.put(line.getProductId(), line);
+            dirty.add(line.getProductId());
+            dirtyUsers.add(userId);
+        }
+    }
+}
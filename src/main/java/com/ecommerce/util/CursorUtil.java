@@ -0,0 +1,97 @@
+package com.ecommerce.util;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CursorUtil {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Encode a keyset position as an opaque, URL-safe continuation token
+     * @param position the position of the last element returned
+     * @return token to pass back as the cursor of the next request
+     */
+    public static String encode(KeysetScrollPosition position) {
+        StringBuilder raw = new StringBuilder();
+        for (Map.Entry<String, ?> key : position.getKeys().entrySet()) {
+            if (!raw.isEmpty()) {
+                raw.append('&');
+            }
+            raw.append(URLEncoder.encode(key.getKey(), StandardCharsets.UTF_8))
+               .append('=')
+               .append(typeTag(key.getValue()))
+               .append(URLEncoder.encode(String.valueOf(key.getValue()), StandardCharsets.UTF_8));
+        }
+        return ENCODER.encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a continuation token back into a forward keyset position
+     * @param token token produced by {@link #encode}, or null/blank for the first page
+     * @return the position to continue from
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static ScrollPosition decode(String token) {
+        if (token == null || token.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        String raw;
+        try {
+            raw = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (String pair : raw.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0 || separator + 1 >= pair.length()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String name = URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8);
+            char type = pair.charAt(separator + 1);
+            String value = URLDecoder.decode(pair.substring(separator + 2), StandardCharsets.UTF_8);
+            keys.put(name, parse(type, value));
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static char typeTag(Object value) {
+        if (value == null) return 'n';
+        if (value instanceof Long) return 'l';
+        if (value instanceof Integer) return 'i';
+        if (value instanceof BigDecimal) return 'd';
+        if (value instanceof LocalDateTime) return 't';
+        if (value instanceof Boolean) return 'b';
+        if (value instanceof String) return 's';
+        throw new IllegalArgumentException("Unsupported cursor key type: " + value.getClass().getName());
+    }
+
+    private static Object parse(char type, String value) {
+        try {
+            return switch (type) {
+                case 'l' -> Long.valueOf(value);
+                case 'i' -> Integer.valueOf(value);
+                case 'd' -> new BigDecimal(value);
+                case 't' -> LocalDateTime.parse(value);
+                case 'b' -> Boolean.valueOf(value);
+                case 's' -> value;
+                case 'n' -> null;
+                default -> throw new IllegalArgumentException("Invalid cursor");
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
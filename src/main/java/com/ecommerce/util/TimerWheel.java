@@ -0,0 +1,87 @@
+package com.ecommerce.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Hashed timer wheel: keys hang in the slot of their deadline tick, so advancing the clock only visits
+// the slots that became due instead of every scheduled key. Deadlines further out than one turn of the
+// wheel wait in their slot for the right turn. Rescheduling a key just moves it; stale slot entries are
+// dropped when their slot comes round.
+public class TimerWheel<K> {
+
+    private final long tickMillis;
+    private final List<Set<K>> slots;
+    // key -> deadline and the slot it was put in
+    private final Map<K, Timeout> timeouts = new HashMap<>();
+    private long currentTick;
+
+    public TimerWheel(long tickMillis, int slotCount, long nowMillis) {
+        if (tickMillis < 1 || slotCount < 1) {
+            throw new IllegalArgumentException("Tick and slot count must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new HashSet<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedule a key, or move it if it is already scheduled
+     * @param key the key to return from advance once due
+     * @param deadlineMillis epoch millis at which the key is due
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        // Deadlines that are already past go to the next slot to be visited
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick);
+        int slot = (int) Math.floorMod(tick, (long) slots.size());
+        timeouts.put(key, new Timeout(deadlineMillis, slot));
+        slots.get(slot).add(key);
+    }
+
+    public synchronized void cancel(K key) {
+        timeouts.remove(key);
+    }
+
+    public synchronized int size() {
+        return timeouts.size();
+    }
+
+    /**
+     * Move the clock forward and take every key whose deadline has passed
+     * @param nowMillis current epoch millis
+     * @return the due keys, which are no longer scheduled
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        List<K> due = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        // After a long pause every slot is due, but each only needs visiting once
+        long fromTick = Math.max(currentTick, targetTick - slots.size() + 1);
+        for (long tick = fromTick; tick <= targetTick; tick++) {
+            int slot = (int) Math.floorMod(tick, (long) slots.size());
+            Iterator<K> keys = slots.get(slot).iterator();
+            while (keys.hasNext()) {
+                K key = keys.next();
+                Timeout timeout = timeouts.get(key);
+                if (timeout == null || timeout.slot() != slot) {
+                    // Cancelled, or rescheduled into another slot
+                    keys.remove();
+                } else if (timeout.deadlineMillis() <= nowMillis) {
+                    keys.remove();
+                    timeouts.remove(key);
+                    due.add(key);
+                }
+            }
+        }
+        currentTick = targetTick;
+        return due;
+    }
+
+    private record Timeout(long deadlineMillis, int slot) {}
+}